@@ -0,0 +1,88 @@
+import com.rabbitmq.client.Channel;
+import common.AsyncLog;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks in-flight deliveries on one channel and acks them in batches.
+ *
+ * Deliveries finish out of order on the worker pool, but basicAck(multiple=true) acks every
+ * tag up to the one given. So flush() only acks up to the highest tag below which every
+ * delivery has finished. Failed deliveries are nacked one at a time right away.
+ */
+public class AckTracker {
+  private static final AsyncLog.Site NACK_FAILED =
+      AsyncLog.site(AckTracker.class, AsyncLog.Level.ERROR, "Failed to nack delivery {}: {}");
+  private static final AsyncLog.Site ACK_FAILED =
+      AsyncLog.site(AckTracker.class, AsyncLog.Level.ERROR, "Failed to ack deliveries up to {}: {}");
+
+  private final Channel channel;
+  private final int ackBatchSize;
+  // delivery tag -> finished
+  private final ConcurrentSkipListMap<Long, Boolean> inFlight = new ConcurrentSkipListMap<>();
+  private final AtomicInteger finishedSinceFlush = new AtomicInteger();
+
+  public AckTracker(Channel channel, int ackBatchSize) {
+    this.channel = channel;
+    this.ackBatchSize = ackBatchSize;
+  }
+
+  public void delivered(long deliveryTag) {
+    inFlight.put(deliveryTag, Boolean.FALSE);
+  }
+
+  /**
+   * The delivery's Redis write succeeded; it will be acked with the next batch.
+   */
+  public void completed(long deliveryTag) {
+    inFlight.replace(deliveryTag, Boolean.TRUE);
+    if (finishedSinceFlush.incrementAndGet() >= ackBatchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * The delivery failed; nack it now, requeueing it if a retry could succeed.
+   */
+  public void rejected(long deliveryTag, boolean requeue) {
+    synchronized (this) {
+      try {
+        channel.basicNack(deliveryTag, false, requeue);
+      } catch (IOException e) {
+        NACK_FAILED.log(deliveryTag, e.getMessage());
+      }
+      inFlight.remove(deliveryTag);
+    }
+    // A nack can unblock acks queued behind it
+    flush();
+  }
+
+  /**
+   * Ack the longest finished prefix of in-flight deliveries with a single multiple-ack.
+   */
+  public synchronized void flush() {
+    finishedSinceFlush.set(0);
+    long lastFinished = -1;
+    Iterator<Map.Entry<Long, Boolean>> entries = inFlight.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<Long, Boolean> entry = entries.next();
+      if (!entry.getValue()) {
+        break;
+      }
+      lastFinished = entry.getKey();
+      entries.remove();
+    }
+    if (lastFinished < 0 || !channel.isOpen()) {
+      return;
+    }
+    try {
+      channel.basicAck(lastFinished, true);
+    } catch (IOException e) {
+      ACK_FAILED.log(lastFinished, e.getMessage());
+    }
+  }
+}
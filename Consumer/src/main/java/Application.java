@@ -1,9 +1,14 @@
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import common.QueueTopology;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class Application {
@@ -20,16 +25,30 @@ public class Application {
     ExecutorService service = Executors.newFixedThreadPool(Config.THREAD_COUNT);
     MessageHandler messageHandler = new MessageHandler();
 
+    // Manual-ack mode only: a timer that flushes pending acks, and either the batching stage (one Redis
+    // pipeline for many deliveries) or a bounded pool for per-delivery Redis writes. Null when unused.
+    ScheduledExecutorService ackScheduler = Config.MANUAL_ACK ? Executors.newSingleThreadScheduledExecutor() : null;
+    RedisBatchWriter batchWriter = Config.MANUAL_ACK && Config.REDIS_BATCH_WRITES
+        ? new RedisBatchWriter(messageHandler, Config.REDIS_WRITER_THREADS, Config.REDIS_BATCH_SIZE,
+            Config.REDIS_BATCH_LINGER_MS, Config.WORK_QUEUE_CAPACITY)
+        : null;
+    ExecutorService workers = Config.MANUAL_ACK && batchWriter == null
+        ? newBoundedExecutor(Config.WORKER_THREADS, Config.WORK_QUEUE_CAPACITY)
+        : null;
+
     // Establish a connection to RabbitMQ
     try (Connection connection = factory.newConnection()) {
       System.out.println("Consumer started!");
 
+      // Declare the queue once up front (and again on connection recovery)
+      QueueTopology.declare(connection);
+
       // Submit consumer tasks to the thread pool
       for (int i = 0; i < Config.THREAD_COUNT; i++) {
         service.submit(() -> {
           try {
             Channel channel = connection.createChannel();
-            MessageConsumer messageConsumer = new MessageConsumer(channel, messageHandler);
+            MessageConsumer messageConsumer = new MessageConsumer(channel, messageHandler, workers, batchWriter, ackScheduler);
             messageConsumer.startConsuming();
           } catch (Exception e) {
             e.printStackTrace();
@@ -37,7 +56,38 @@ public class Application {
         });
       }
       service.awaitTermination(600, TimeUnit.SECONDS);
+    } finally {
+      if (workers != null) {
+        workers.shutdown();
+      }
+      if (batchWriter != null) {
+        batchWriter.close();
+      }
+      if (ackScheduler != null) {
+        ackScheduler.shutdown();
+      }
     }
 
   }
+
+  /**
+   * A fixed pool with a bounded queue. When the queue is full, submit blocks the caller
+   * (the channel's dispatch thread) instead of growing the backlog, which is the backpressure
+   * that keeps memory flat when Redis slows down.
+   */
+  private static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        (task, executor) -> {
+          if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Worker pool is shut down");
+          }
+          try {
+            executor.getQueue().put(task);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a worker", e);
+          }
+        });
+  }
 }
@@ -1,3 +1,5 @@
+import common.SharedConfig;
+
 public class Config {
     // RabbitMQ
     public static final String HOST = "44.225.254.46";
@@ -5,14 +7,38 @@ public class Config {
     public static final String PASSWORD = "050709";
     public static final int PORT = 5672;
 
-    // Redis
-    public static final String REDIS_HOST = "54.244.202.209";
-    public static final int REDIS_PORT = 6379;
-    public static final int REDIS_MAX_TOTAL = 100;
-    public static final int REDIS_MAX_IDLE = 20;
-    public static final int REDIS_MIN_IDLE = 10;
-
     // Consumer
     public static final int TOTAL_MESSAGES = 200_000;
     public static final int THREAD_COUNT = 8;
-}
\ No newline at end of file
+
+    // Manual acks: a delivery is acked only after its Redis write succeeded.
+    // false (the default) keeps auto-ack with unbounded async processing.
+    public static final boolean MANUAL_ACK = false;
+    public static final int PREFETCH_COUNT = 250;
+    public static final int WORKER_THREADS = 32;
+    public static final int WORK_QUEUE_CAPACITY = 1_000;
+    public static final int ACK_BATCH_SIZE = 50;
+    public static final long ACK_FLUSH_INTERVAL_MS = 100;
+
+    // Batched Redis writes across deliveries (manual-ack mode): one pipeline per REDIS_BATCH_SIZE rides or per
+    // REDIS_BATCH_LINGER_MS. Without it, each delivery's rides are still written with one pipeline.
+    // PREFETCH_COUNT * THREAD_COUNT should comfortably exceed REDIS_BATCH_SIZE * REDIS_WRITER_THREADS.
+    public static final boolean REDIS_BATCH_WRITES = true;
+    public static final int REDIS_WRITER_THREADS = 4;
+    public static final int REDIS_BATCH_SIZE = 500;
+    public static final long REDIS_BATCH_LINGER_MS = 5;
+    // How rides reach Redis: "pipeline" queues SADD/HINCRBY/ZINCRBY commands per ride (or per key with
+    // PRE_AGGREGATE), "script" runs one EVALSHA of RideScript per ride, which also maintains the
+    // lifts-ridden and days-skied sets. Both modes send a whole batch in one pipeline.
+    public static final String REDIS_WRITE_MODE = "pipeline";
+    // Sum vertical increments per distinct key within each batch before writing them
+    public static final boolean PRE_AGGREGATE = true;
+    // Unique skiers per resort-day: "set" keeps an exact SET (SCARD), "hll" a HyperLogLog
+    // (PFCOUNT, ~0.81% standard error, at most 12 KB per key), "both" writes both.
+    // The Server's approximate mode (?mode=approx) needs "hll" or "both".
+    public static final String UNIQUE_SKIERS_STORE = "set";
+    // Maintain a per-resort, per-season sorted set of skiers by vertical for the leaderboard endpoint
+    public static final boolean LEADERBOARD = true;
+    // Tell the Server's near-cache which skier-days each pipeline wrote; on whenever the near-cache is
+    public static final boolean PUBLISH_INVALIDATIONS = SharedConfig.NEAR_CACHE;
+}
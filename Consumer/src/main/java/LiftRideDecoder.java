@@ -0,0 +1,48 @@
+import com.google.gson.Gson;
+import common.LiftRideBatch;
+import common.LiftRideCodec;
+import common.beans.LiftRideMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns a delivery body into lift ride messages, choosing the decoder from the AMQP content type.
+ * Messages without a content type are the original single-ride JSON messages.
+ */
+public class LiftRideDecoder {
+  private static final Gson gson = new Gson();
+
+  public static List<LiftRideMessage> decode(String contentType, byte[] body) {
+    if (LiftRideCodec.CONTENT_TYPE.equals(contentType)) {
+      return Collections.singletonList(LiftRideCodec.decode(body));
+    }
+    if (LiftRideBatch.BINARY_CONTENT_TYPE.equals(contentType)) {
+      List<byte[]> payloads = LiftRideBatch.decode(body);
+      List<LiftRideMessage> messages = new ArrayList<>(payloads.size());
+      for (byte[] payload : payloads) {
+        messages.add(LiftRideCodec.decode(payload));
+      }
+      return messages;
+    }
+    if (LiftRideBatch.JSON_CONTENT_TYPE.equals(contentType)) {
+      List<byte[]> payloads = LiftRideBatch.decode(body);
+      List<LiftRideMessage> messages = new ArrayList<>(payloads.size());
+      for (byte[] payload : payloads) {
+        messages.add(fromJson(payload));
+      }
+      return messages;
+    }
+    return Collections.singletonList(fromJson(body));
+  }
+
+  public static LiftRideMessage fromJson(String message) {
+    return gson.fromJson(message, LiftRideMessage.class);
+  }
+
+  private static LiftRideMessage fromJson(byte[] payload) {
+    return fromJson(new String(payload, StandardCharsets.UTF_8));
+  }
+}
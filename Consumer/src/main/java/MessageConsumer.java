@@ -1,46 +1,137 @@
 import com.rabbitmq.client.*;
+import common.AsyncLog;
+import common.SharedConfig;
+import common.beans.LiftRideMessage;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MessageConsumer {
-  private static final String QUEUE_NAME = "assignment2_queue";
+  private static final AsyncLog.Site PROCESSING_FAILED =
+      AsyncLog.site(MessageConsumer.class, AsyncLog.Level.ERROR, "Exception occurred during message processing: {}");
+  private static final AsyncLog.Site UNDECODABLE =
+      AsyncLog.site(MessageConsumer.class, AsyncLog.Level.WARN, "Discarding undecodable message: {}");
+  private static final AsyncLog.Site REQUEUED =
+      AsyncLog.site(MessageConsumer.class, AsyncLog.Level.WARN, "Redis write failed, requeueing message: {}");
 
   private final Channel channel;
   private final MessageHandler messageHandler;
+  // manual-ack mode only: the bounded worker pool (when there is no batch writer), batch writer and ack timer
+  private final ExecutorService workers;
+  private final RedisBatchWriter batchWriter;
+  private final ScheduledExecutorService ackScheduler;
 
-  public MessageConsumer(Channel channel, MessageHandler messageHandler) {
+  public MessageConsumer(Channel channel, MessageHandler messageHandler, ExecutorService workers,
+      RedisBatchWriter batchWriter, ScheduledExecutorService ackScheduler) {
     this.channel = channel;
     this.messageHandler = messageHandler;
+    this.workers = workers;
+    this.batchWriter = batchWriter;
+    this.ackScheduler = ackScheduler;
   }
 
   public void startConsuming() throws IOException {
-    // Declare the queue. If it doesn't exist, it will be created.
-    channel.queueDeclare(QUEUE_NAME, false, false, false, null);
+    if (Config.MANUAL_ACK) {
+      startConsumingWithManualAck();
+      return;
+    }
 
+    // The queue is declared once by QueueTopology before the consumers start.
     // Begin consuming messages from the queue, with automatic message acknowledgment (auto-ack enabled)
-    channel.basicConsume(QUEUE_NAME, true, new DefaultConsumer(channel) {
+    channel.basicConsume(SharedConfig.QUEUE_NAME, true, new DefaultConsumer(channel) {
       @Override
       public void handleDelivery(String consumerTag, Envelope envelope,
           AMQP.BasicProperties properties, byte[] body) throws IOException {
 
-        // Convert the message content to a string
-        String message = new String(body, "UTF-8");
-
         // Process the message asynchronously using CompletableFuture to handle it in a separate thread
         CompletableFuture.runAsync(() -> {
           try {
-            // Pass the received message to the message handler for processing
-            messageHandler.processMessage(message);
+            // Decode by content type (JSON or binary, single ride or batch) and write the delivery's rides
+            // with one Redis pipeline
+            messageHandler.processBatch(LiftRideDecoder.decode(properties.getContentType(), body));
+          } catch (Exception e) {
+            PROCESSING_FAILED.log(String.valueOf(e));
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Consume with manual acks. The broker keeps at most PREFETCH_COUNT unacked deliveries on this channel,
+   * the bounded worker pool blocks this channel's dispatch when it is full, and a delivery is only acked
+   * after its Redis write succeeded.
+   */
+  private void startConsumingWithManualAck() throws IOException {
+    channel.basicQos(Config.PREFETCH_COUNT);
+    AckTracker ackTracker = new AckTracker(channel, Config.ACK_BATCH_SIZE);
+    // Ack stragglers when traffic is too low to fill an ack batch
+    ackScheduler.scheduleWithFixedDelay(ackTracker::flush,
+        Config.ACK_FLUSH_INTERVAL_MS, Config.ACK_FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+    channel.basicConsume(SharedConfig.QUEUE_NAME, false, new DefaultConsumer(channel) {
+      @Override
+      public void handleDelivery(String consumerTag, Envelope envelope,
+          AMQP.BasicProperties properties, byte[] body) {
+        long deliveryTag = envelope.getDeliveryTag();
+        ackTracker.delivered(deliveryTag);
+
+        if (batchWriter != null) {
+          writeInBatch(ackTracker, deliveryTag, properties, body);
+          return;
+        }
+
+        workers.execute(() -> {
+          List<LiftRideMessage> liftRideMessages;
+          try {
+            liftRideMessages = LiftRideDecoder.decode(properties.getContentType(), body);
+          } catch (RuntimeException e) {
+            // A message we cannot decode will never succeed, so drop it instead of requeueing
+            UNDECODABLE.log(String.valueOf(e));
+            ackTracker.rejected(deliveryTag, false);
+            return;
+          }
+          try {
+            // one pipeline for the whole delivery
+            messageHandler.processBatch(liftRideMessages);
+            ackTracker.completed(deliveryTag);
           } catch (Exception e) {
-            System.err.println("Exception occurred during message processing: " + e);
-            throw new RuntimeException(e);
+            REQUEUED.log(e.getMessage());
+            ackTracker.rejected(deliveryTag, true);
           }
-        }).exceptionally(ex -> {
-          System.err.println("Exception occurred during CompletableFuture processing: " + ex);
-          return null;
         });
       }
     });
   }
+
+  /**
+   * Hand the delivery to the batch writer and ack it once the pipeline carrying its rides has synced.
+   */
+  private void writeInBatch(AckTracker ackTracker, long deliveryTag, AMQP.BasicProperties properties, byte[] body) {
+    List<LiftRideMessage> liftRideMessages;
+    try {
+      liftRideMessages = LiftRideDecoder.decode(properties.getContentType(), body);
+    } catch (RuntimeException e) {
+      UNDECODABLE.log(String.valueOf(e));
+      ackTracker.rejected(deliveryTag, false);
+      return;
+    }
+    try {
+      batchWriter.submit(liftRideMessages).whenComplete((ignored, error) -> {
+        if (error == null) {
+          ackTracker.completed(deliveryTag);
+        } else {
+          REQUEUED.log(error.getMessage());
+          ackTracker.rejected(deliveryTag, true);
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      ackTracker.rejected(deliveryTag, true);
+    }
+  }
 }
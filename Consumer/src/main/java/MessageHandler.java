@@ -1,48 +1,240 @@
-import com.google.gson.Gson;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Pipeline;
+import common.AsyncLog;
+import common.RedisClient;
+import common.RedisKeys;
+import common.SharedConfig;
+import common.beans.LiftRideMessage;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class MessageHandler {
+  private static final AsyncLog.Site PIPELINE_OK =
+      AsyncLog.site(MessageHandler.class, AsyncLog.Level.DEBUG, "Redis pipeline execution successful: {} rides");
+  private static final AsyncLog.Site PIPELINE_FAILED =
+      AsyncLog.site(MessageHandler.class, AsyncLog.Level.ERROR, "Redis pipeline execution failed: {}");
+  private static final AsyncLog.Site QUEUED_WRITE =
+      AsyncLog.site(MessageHandler.class, AsyncLog.Level.DEBUG, "Queued Redis write: {}");
+  private static final AsyncLog.Site SCRIPT_RELOADED =
+      AsyncLog.site(MessageHandler.class, AsyncLog.Level.WARN, "Ride script missing in Redis, reloaded it for {} rides");
+
+  // per-ride Lua script, used when Config.REDIS_WRITE_MODE is "script"
+  private final RideScript rideScript = "script".equals(Config.REDIS_WRITE_MODE) ? new RideScript() : null;
 
   public void processMessage(String message) {
-    Gson gson = new Gson();
-    LiftRideMessage liftRideMessage = gson.fromJson(message, LiftRideMessage.class);
+    processMessage(LiftRideDecoder.fromJson(message));
+  }
+
+  public void processMessage(LiftRideMessage liftRideMessage) {
+    processBatch(Collections.singletonList(liftRideMessage));
+  }
+
+  /**
+   * Write all rides with a single pipeline: one connection checkout and one round-trip for the batch.
+   * With a sharded store or a cluster the pipeline groups the commands per shard and sends one batch
+   * to each node; RedisKeys' hash tags keep each ride's keys on one shard.
+   */
+  public void processBatch(List<LiftRideMessage> liftRideMessages) {
+    UnifiedJedis client = RedisClient.getClient();
+    // one "resortID,seasonID,dayID,skierID" line per written skier-day for the Server's near-cache
+    StringBuilder invalidations = Config.PUBLISH_INVALIDATIONS ? new StringBuilder() : null;
+    // Queued after the writes, so subscribers only hear about them once Redis has applied them.
+    // Across shards there is no such ordering, so the message waits for the sync instead.
+    boolean publishInPipeline = RedisClient.isStandalone();
+    try {
+      List<Response<Object>> scriptResults = null;
+      try (AbstractPipeline pipeline = client.pipelined()) { // Start the pipeline
+        if (rideScript != null) {
+          scriptResults = queueScriptCalls(client, pipeline, liftRideMessages, invalidations);
+        } else if (Config.PRE_AGGREGATE && liftRideMessages.size() > 1) {
+          queueAggregatedWrites(pipeline, liftRideMessages, invalidations);
+        } else {
+          for (LiftRideMessage liftRideMessage : liftRideMessages) {
+            queueWrites(pipeline, liftRideMessage, invalidations);
+          }
+        }
+        if (publishInPipeline) {
+          publishInvalidations(pipeline, invalidations);
+        }
+
+        // Execute all queued commands in the pipeline
+        pipeline.sync();
+      }
+
+      // the first pipeline is synced and closed before a retry checks out another connection
+      if (scriptResults != null) {
+        rerunMissingScript(client, liftRideMessages, scriptResults, invalidations);
+      }
+      if (!publishInPipeline && invalidations != null && invalidations.length() > 0) {
+        RedisClient.getPubSubClient().publish(SharedConfig.INVALIDATION_CHANNEL, invalidations.toString());
+      }
+      PIPELINE_OK.log(liftRideMessages.size());
+    } catch (RuntimeException e) {
+      // Rethrow so the caller can decide whether the message is acked or requeued
+      PIPELINE_FAILED.log(e.getMessage());
+      throw e;
+    }
+  }
 
+  /**
+   * Queue one call of the ride script per ride; the script applies all derived updates atomically.
+   */
+  private List<Response<Object>> queueScriptCalls(UnifiedJedis client, AbstractPipeline pipeline,
+                                                  List<LiftRideMessage> liftRideMessages, StringBuilder invalidations) {
+    if (!rideScript.isLoaded()) {
+      rideScript.load(client);
+    }
+    List<Response<Object>> results = new ArrayList<>(liftRideMessages.size());
+    for (LiftRideMessage liftRideMessage : liftRideMessages) {
+      results.add(rideScript.queue(pipeline, liftRideMessage, liftRideMessage.getLiftRide().getLiftID() * 10));
+      appendInvalidation(invalidations, liftRideMessage.getResortID(), liftRideMessage.getSeasonID(),
+          liftRideMessage.getDayID(), liftRideMessage.getSkierID());
+    }
+    return results;
+  }
+
+  /**
+   * If Redis lost the script (restart, SCRIPT FLUSH), the affected EVALSHAs did nothing: reload the
+   * script and replay only those rides, so rides that did run are not counted twice. Any other
+   * script error fails the batch. Called after the batch's own pipeline is closed.
+   */
+  private void rerunMissingScript(UnifiedJedis client, List<LiftRideMessage> liftRideMessages,
+                                  List<Response<Object>> scriptResults, StringBuilder invalidations) {
+    List<LiftRideMessage> missing = new ArrayList<>();
+    for (int i = 0; i < scriptResults.size(); i++) {
+      try {
+        scriptResults.get(i).get();
+      } catch (JedisNoScriptException e) {
+        missing.add(liftRideMessages.get(i));
+      }
+    }
+    if (missing.isEmpty()) {
+      return;
+    }
+    SCRIPT_RELOADED.log(missing.size());
+    rideScript.load(client);
+    try (AbstractPipeline pipeline = client.pipelined()) {
+      List<Response<Object>> retried = new ArrayList<>(missing.size());
+      for (LiftRideMessage liftRideMessage : missing) {
+        retried.add(rideScript.queue(pipeline, liftRideMessage, liftRideMessage.getLiftRide().getLiftID() * 10));
+      }
+      // the first invalidation went out before these writes landed
+      publishInvalidations(pipeline, invalidations);
+      pipeline.sync();
+      for (Response<Object> result : retried) {
+        result.get();
+      }
+    }
+  }
+
+  private static void publishInvalidations(AbstractPipeline pipeline, StringBuilder invalidations) {
+    if (invalidations != null && invalidations.length() > 0) {
+      pipeline.publish(SharedConfig.INVALIDATION_CHANNEL, invalidations.toString());
+    }
+  }
+
+  /**
+   * Sum the vertical per distinct key across the batch and queue one command per key,
+   * so Redis writes scale with distinct skiers in the batch rather than with rides.
+   * The lifts set still gets one SADD per ride: a skier-day's rides rarely repeat a lift
+   * within one batch, so there is little to merge.
+   */
+  private void queueAggregatedWrites(AbstractPipeline pipeline, List<LiftRideMessage> liftRideMessages,
+                                     StringBuilder invalidations) {
+    int expected = liftRideMessages.size();
+    // (resort, season, day, skier) -> day vertical; also drives the unique-skier SADD
+    RideAggregator dayVertical = new RideAggregator(expected);
+    // (resort, skier, season, 0) -> season vertical
+    RideAggregator seasonVertical = new RideAggregator(expected);
+    // (resort, skier, 0, 0) -> all-time vertical
+    RideAggregator totalVertical = new RideAggregator(expected);
+
+    for (LiftRideMessage liftRideMessage : liftRideMessages) {
+      int resortID = liftRideMessage.getResortID();
+      int seasonID = liftRideMessage.getSeasonID();
+      int dayID = liftRideMessage.getDayID();
+      int skierID = liftRideMessage.getSkierID();
+      int liftID = liftRideMessage.getLiftRide().getLiftID();
+      int vertical = liftID * 10;
+      pipeline.sadd(RedisKeys.skierLifts(resortID, seasonID, dayID, skierID), RedisKeys.number(liftID));
+      dayVertical.add(resortID, seasonID, dayID, skierID, vertical);
+      seasonVertical.add(resortID, skierID, seasonID, 0, vertical);
+      totalVertical.add(resortID, skierID, 0, 0, vertical);
+    }
+
+    dayVertical.forEach((resortID, seasonID, dayID, skierID, vertical) -> {
+      addUniqueSkier(pipeline, resortID, seasonID, dayID, skierID);
+      pipeline.hincrBy(RedisKeys.skierDay(resortID, seasonID, dayID, skierID), RedisKeys.VERTICAL_FIELD, vertical);
+      pipeline.sadd(RedisKeys.skierDays(resortID, skierID, seasonID), RedisKeys.number(dayID));
+      appendInvalidation(invalidations, resortID, seasonID, dayID, skierID);
+    });
+    seasonVertical.forEach((resortID, skierID, seasonID, unused, vertical) -> {
+      pipeline.hincrBy(RedisKeys.skierVertical(resortID, skierID), RedisKeys.number(seasonID), vertical);
+      addToLeaderboard(pipeline, resortID, seasonID, skierID, vertical);
+    });
+    totalVertical.forEach((resortID, skierID, unused, unused2, vertical) ->
+        pipeline.hincrBy(RedisKeys.skierVertical(resortID, skierID), RedisKeys.ALL_FIELD, vertical));
+  }
+
+  private void queueWrites(AbstractPipeline pipeline, LiftRideMessage liftRideMessage, StringBuilder invalidations) {
     int skierID = liftRideMessage.getSkierID();
     int liftID = liftRideMessage.getLiftRide().getLiftID();
     int vertical = liftID * 10;
-    String dayID = String.valueOf(liftRideMessage.getDayID());
-    String seasonID = String.valueOf(liftRideMessage.getSeasonID());
+    int dayID = liftRideMessage.getDayID();
+    int seasonID = liftRideMessage.getSeasonID();
     int resortID = liftRideMessage.getResortID();
 
-    try (Jedis jedis = RedisClient.getPool().getResource()) {
-      Pipeline pipeline = jedis.pipelined(); // Start the pipeline
+    // Batch Redis commands
+    addUniqueSkier(pipeline, resortID, seasonID, dayID, skierID);
 
-      // Batch Redis commands
-      String resortKey = "resort:" + resortID + ":season:" + seasonID + ":day:" + dayID + ":skiers";
-      pipeline.sadd(resortKey, String.valueOf(skierID));
+    pipeline.hincrBy(RedisKeys.skierDay(resortID, seasonID, dayID, skierID), RedisKeys.VERTICAL_FIELD, vertical);
+    pipeline.sadd(RedisKeys.skierLifts(resortID, seasonID, dayID, skierID), RedisKeys.number(liftID));
+    pipeline.sadd(RedisKeys.skierDays(resortID, skierID, seasonID), RedisKeys.number(dayID));
 
-      String skierDayKey = "resort:" + resortID + ":season:" + seasonID + ":day:" + dayID + ":skier:" + skierID;
-      pipeline.hincrBy(skierDayKey, "vertical", vertical);
-
-      String skierVerticalKey = "resort:" + resortID + ":skier:" + skierID + ":vertical";
-      pipeline.hincrBy(skierVerticalKey, seasonID, vertical);
-      pipeline.hincrBy(skierVerticalKey, "all", vertical);
+    byte[] skierVerticalKey = RedisKeys.skierVertical(resortID, skierID);
+    pipeline.hincrBy(skierVerticalKey, RedisKeys.number(seasonID), vertical);
+    pipeline.hincrBy(skierVerticalKey, RedisKeys.ALL_FIELD, vertical);
+    addToLeaderboard(pipeline, resortID, seasonID, skierID, vertical);
+    appendInvalidation(invalidations, resortID, seasonID, dayID, skierID);
 
+    QUEUED_WRITE.log(liftID);
+  }
 
-//      String skierLiftsKey = "resort:" + resortID + ":season:" + seasonID + ":day:" + dayID + ":lifts:" + skierID;
-//      pipeline.sadd(skierLiftsKey, String.valueOf(liftID));
-//
-//      String skierDaysKey = "skier:" + skierID + ":season:" + seasonID + ":days";
-//      pipeline.sadd(skierDaysKey, String.valueOf(dayID));
+  /**
+   * Record the skier in the resort-day's exact SET and/or HyperLogLog, per Config.UNIQUE_SKIERS_STORE.
+   */
+  private static void addUniqueSkier(AbstractPipeline pipeline, int resortID, int seasonID, int dayID, int skierID) {
+    if (!"hll".equals(Config.UNIQUE_SKIERS_STORE)) {
+      pipeline.sadd(RedisKeys.daySkiers(resortID, seasonID, dayID), RedisKeys.number(skierID));
+    }
+    if (!"set".equals(Config.UNIQUE_SKIERS_STORE)) {
+      pipeline.pfadd(RedisKeys.daySkiersHll(resortID, seasonID, dayID), RedisKeys.number(skierID));
+    }
+  }
 
-      System.out.println("Queued Redis write:" + liftID);
+  /**
+   * Keep the resort-season leaderboard in step with the season vertical: one O(log n) ZINCRBY.
+   */
+  private static void addToLeaderboard(AbstractPipeline pipeline, int resortID, int seasonID, int skierID,
+                                       long vertical) {
+    if (Config.LEADERBOARD) {
+      pipeline.zincrby(RedisKeys.leaderboard(resortID, seasonID), vertical, RedisKeys.number(skierID));
+    }
+  }
 
-      // Execute all queued commands in the pipeline
-      pipeline.sync();
-      System.out.println("Redis pipeline execution successful.");
-    } catch (Exception e) {
-      System.err.println("Redis pipeline execution failed: " + e.getMessage());
+  private static void appendInvalidation(StringBuilder invalidations, int resortID, int seasonID, int dayID,
+                                         int skierID) {
+    if (invalidations == null) {
+      return;
+    }
+    if (invalidations.length() > 0) {
+      invalidations.append('\n');
     }
+    invalidations.append(resortID).append(',').append(seasonID).append(',')
+        .append(dayID).append(',').append(skierID);
   }
 }
@@ -0,0 +1,112 @@
+import common.beans.LiftRideMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batching write stage between the RabbitMQ consumers and Redis.
+ *
+ * Deliveries are queued here and drained by a few writer threads. Each writer collects deliveries
+ * until the batch holds batchSize rides or the first delivery has lingered for the linger time,
+ * then writes the whole batch with one pipeline (one pool checkout, one round-trip). The future
+ * returned for each delivery completes after that pipeline synced, so the delivery can be acked.
+ */
+public class RedisBatchWriter {
+  private final MessageHandler messageHandler;
+  private final int batchSize;
+  private final long lingerNanos;
+  // bounded, so a slow Redis blocks the consumers' dispatch threads instead of growing memory
+  private final BlockingQueue<PendingWrite> queue;
+  private final List<Thread> writers = new ArrayList<>();
+  private volatile boolean running = true;
+
+  public RedisBatchWriter(MessageHandler messageHandler, int writerThreads, int batchSize,
+      long lingerMillis, int queueCapacity) {
+    this.messageHandler = messageHandler;
+    this.batchSize = batchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    for (int i = 0; i < writerThreads; i++) {
+      Thread writer = new Thread(this::runWriter, "redis-batch-writer-" + i);
+      writer.setDaemon(true);
+      writer.start();
+      writers.add(writer);
+    }
+  }
+
+  /**
+   * Queue the rides of one delivery, blocking while the queue is full.
+   */
+  public CompletableFuture<Void> submit(List<LiftRideMessage> liftRideMessages) throws InterruptedException {
+    PendingWrite write = new PendingWrite(liftRideMessages);
+    queue.put(write);
+    return write.future;
+  }
+
+  public void close() {
+    running = false;
+    for (Thread writer : writers) {
+      writer.interrupt();
+    }
+  }
+
+  private void runWriter() {
+    List<PendingWrite> batch = new ArrayList<>();
+    while (running) {
+      int rides = 0;
+      try {
+        PendingWrite first = queue.take();
+        batch.add(first);
+        rides += first.liftRideMessages.size();
+        long deadline = System.nanoTime() + lingerNanos;
+        while (rides < batchSize) {
+          long remaining = deadline - System.nanoTime();
+          PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          rides += next.liftRideMessages.size();
+        }
+      } catch (InterruptedException e) {
+        // close() interrupts us; whatever is in hand is still written below
+        Thread.currentThread().interrupt();
+      }
+      if (!batch.isEmpty()) {
+        write(batch, rides);
+        batch = new ArrayList<>();
+      }
+    }
+  }
+
+  private void write(List<PendingWrite> batch, int rides) {
+    List<LiftRideMessage> liftRideMessages = new ArrayList<>(rides);
+    for (PendingWrite write : batch) {
+      liftRideMessages.addAll(write.liftRideMessages);
+    }
+    try {
+      messageHandler.processBatch(liftRideMessages);
+    } catch (RuntimeException e) {
+      for (PendingWrite write : batch) {
+        write.future.completeExceptionally(e);
+      }
+      return;
+    }
+    for (PendingWrite write : batch) {
+      write.future.complete(null);
+    }
+  }
+
+  private static class PendingWrite {
+    private final List<LiftRideMessage> liftRideMessages;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    PendingWrite(List<LiftRideMessage> liftRideMessages) {
+      this.liftRideMessages = liftRideMessages;
+    }
+  }
+}
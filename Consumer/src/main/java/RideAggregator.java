@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a key of four ints to a summed long, used to pre-aggregate
+ * vertical increments within one Redis batch before they are flushed.
+ *
+ * Keys and sums live in parallel primitive arrays, so adding a ride allocates nothing
+ * (no String keys, no boxed Longs). The table doubles when it is more than half full.
+ */
+public class RideAggregator {
+  private int[] keys;    // four ints per slot
+  private long[] sums;
+  private boolean[] used;
+  private int size;
+  private int mask;
+
+  public RideAggregator(int expectedKeys) {
+    int capacity = Integer.highestOneBit(Math.max(expectedKeys, 8) * 2 - 1) << 1;
+    allocate(capacity);
+  }
+
+  /**
+   * Add delta to the sum stored for (k0, k1, k2, k3).
+   */
+  public void add(int k0, int k1, int k2, int k3, long delta) {
+    if ((size + 1) * 2 > used.length) {
+      resize();
+    }
+    int slot = hash(k0, k1, k2, k3) & mask;
+    while (used[slot]) {
+      int base = slot * 4;
+      if (keys[base] == k0 && keys[base + 1] == k1 && keys[base + 2] == k2 && keys[base + 3] == k3) {
+        sums[slot] += delta;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    insert(slot, k0, k1, k2, k3, delta);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Visit every distinct key with its sum.
+   */
+  public void forEach(Visitor visitor) {
+    for (int slot = 0; slot < used.length; slot++) {
+      if (used[slot]) {
+        int base = slot * 4;
+        visitor.visit(keys[base], keys[base + 1], keys[base + 2], keys[base + 3], sums[slot]);
+      }
+    }
+  }
+
+  public void clear() {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  @FunctionalInterface
+  public interface Visitor {
+    void visit(int k0, int k1, int k2, int k3, long sum);
+  }
+
+  private void insert(int slot, int k0, int k1, int k2, int k3, long sum) {
+    int base = slot * 4;
+    keys[base] = k0;
+    keys[base + 1] = k1;
+    keys[base + 2] = k2;
+    keys[base + 3] = k3;
+    sums[slot] = sum;
+    used[slot] = true;
+    size++;
+  }
+
+  private void resize() {
+    int[] oldKeys = keys;
+    long[] oldSums = sums;
+    boolean[] oldUsed = used;
+    allocate(oldUsed.length * 2);
+    for (int slot = 0; slot < oldUsed.length; slot++) {
+      if (oldUsed[slot]) {
+        int base = slot * 4;
+        int k0 = oldKeys[base];
+        int k1 = oldKeys[base + 1];
+        int k2 = oldKeys[base + 2];
+        int k3 = oldKeys[base + 3];
+        int target = hash(k0, k1, k2, k3) & mask;
+        while (used[target]) {
+          target = (target + 1) & mask;
+        }
+        insert(target, k0, k1, k2, k3, oldSums[slot]);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity * 4];
+    sums = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+    size = 0;
+  }
+
+  private static int hash(int k0, int k1, int k2, int k3) {
+    int h = k0;
+    h = h * 31 + k1;
+    h = h * 31 + k2;
+    h = h * 31 + k3;
+    // spread the bits, the ids are small and sequential
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,113 @@
+import common.RedisClient;
+import common.RedisKeys;
+import common.SharedConfig;
+import common.beans.LiftRideMessage;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server-side Lua script that applies every update derived from one ride in a single atomic call.
+ *
+ * The script body is generated once from Config (exact set and/or HyperLogLog, leaderboard), loaded
+ * with SCRIPT LOAD, and invoked per ride with EVALSHA inside the batch pipeline, so adding derived views
+ * costs script work rather than extra commands or round-trips. All keys are passed in KEYS, built by
+ * RedisKeys, so the script also works where Redis needs to know the keys up front (cluster slots).
+ *
+ * On a sharded store or a cluster each node would need its own SCRIPT LOAD, so there the script is sent
+ * with EVAL instead (each node still compiles it only once). All its keys must then hash to one shard,
+ * which needs SharedConfig.REDIS_SHARD_BY "resort".
+ *
+ * KEYS: skierDay, skierVertical, skierLifts, skierDays, then optionally daySkiers, daySkiersHll, leaderboard
+ * ARGV: skierID, seasonID, dayID, liftID, vertical
+ */
+public class RideScript {
+
+  private static final boolean EXACT_SKIERS = !"hll".equals(Config.UNIQUE_SKIERS_STORE);
+  private static final boolean HLL_SKIERS = !"set".equals(Config.UNIQUE_SKIERS_STORE);
+  private static final int KEY_COUNT = 4 + (EXACT_SKIERS ? 1 : 0) + (HLL_SKIERS ? 1 : 0) + (Config.LEADERBOARD ? 1 : 0);
+
+  static final String SOURCE = buildSource();
+  private static final byte[] SOURCE_BYTES = SOURCE.getBytes(StandardCharsets.UTF_8);
+
+  // EVALSHA on standalone Redis, EVAL across shards
+  private final boolean useSha = RedisClient.isStandalone();
+  // SHA1 of the loaded script, null until the first load
+  private volatile byte[] sha;
+
+  public RideScript() {
+    if (!useSha && !"resort".equals(SharedConfig.REDIS_SHARD_BY)) {
+      throw new IllegalStateException("Script writes on a sharded Redis need REDIS_SHARD_BY \"resort\"");
+    }
+  }
+
+  /**
+   * SCRIPT LOAD the script (again). Needed once at startup and after Redis reports NOSCRIPT,
+   * e.g. because it restarted or its script cache was flushed.
+   */
+  public void load(UnifiedJedis client) {
+    if (useSha) {
+      sha = client.scriptLoad(SOURCE).getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  public boolean isLoaded() {
+    return !useSha || sha != null;
+  }
+
+  /**
+   * Queue one EVALSHA (or EVAL) for the ride; the response fails with a NOSCRIPT error if the script is missing.
+   */
+  public Response<Object> queue(AbstractPipeline pipeline, LiftRideMessage liftRideMessage, long vertical) {
+    int resortID = liftRideMessage.getResortID();
+    int seasonID = liftRideMessage.getSeasonID();
+    int dayID = liftRideMessage.getDayID();
+    int skierID = liftRideMessage.getSkierID();
+    int liftID = liftRideMessage.getLiftRide().getLiftID();
+
+    byte[][] params = new byte[KEY_COUNT + 5][];
+    int i = 0;
+    params[i++] = RedisKeys.skierDay(resortID, seasonID, dayID, skierID);
+    params[i++] = RedisKeys.skierVertical(resortID, skierID);
+    params[i++] = RedisKeys.skierLifts(resortID, seasonID, dayID, skierID);
+    params[i++] = RedisKeys.skierDays(resortID, skierID, seasonID);
+    if (EXACT_SKIERS) {
+      params[i++] = RedisKeys.daySkiers(resortID, seasonID, dayID);
+    }
+    if (HLL_SKIERS) {
+      params[i++] = RedisKeys.daySkiersHll(resortID, seasonID, dayID);
+    }
+    if (Config.LEADERBOARD) {
+      params[i++] = RedisKeys.leaderboard(resortID, seasonID);
+    }
+    params[i++] = RedisKeys.number(skierID);
+    params[i++] = RedisKeys.number(seasonID);
+    params[i++] = RedisKeys.number(dayID);
+    params[i++] = RedisKeys.number(liftID);
+    params[i] = String.valueOf(vertical).getBytes(StandardCharsets.US_ASCII);
+    return useSha ? pipeline.evalsha(sha, KEY_COUNT, params) : pipeline.eval(SOURCE_BYTES, KEY_COUNT, params);
+  }
+
+  private static String buildSource() {
+    StringBuilder lua = new StringBuilder()
+        .append("local vertical = tonumber(ARGV[5])\n")
+        .append("redis.call('HINCRBY', KEYS[1], 'vertical', vertical)\n")
+        .append("redis.call('HINCRBY', KEYS[2], ARGV[2], vertical)\n")
+        .append("redis.call('HINCRBY', KEYS[2], 'all', vertical)\n")
+        .append("redis.call('SADD', KEYS[3], ARGV[4])\n")
+        .append("redis.call('SADD', KEYS[4], ARGV[3])\n");
+    int key = 5;
+    if (EXACT_SKIERS) {
+      lua.append("redis.call('SADD', KEYS[").append(key++).append("], ARGV[1])\n");
+    }
+    if (HLL_SKIERS) {
+      lua.append("redis.call('PFADD', KEYS[").append(key++).append("], ARGV[1])\n");
+    }
+    if (Config.LEADERBOARD) {
+      lua.append("redis.call('ZINCRBY', KEYS[").append(key).append("], vertical, ARGV[1])\n");
+    }
+    return lua.append("return 1\n").toString();
+  }
+}
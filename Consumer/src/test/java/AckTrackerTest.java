@@ -0,0 +1,139 @@
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AckTrackerTest {
+
+  // "ack <tag>" for multiple-acks and "nack <tag> <requeue>" for single nacks, in call order
+  private final List<String> calls = new ArrayList<>();
+  private boolean open = true;
+  private boolean failAcks;
+
+  private final Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+      new Class<?>[]{Channel.class}, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "isOpen":
+            return open;
+          case "basicAck":
+            if (failAcks) {
+              throw new IOException("channel closed");
+            }
+            assertEquals(Boolean.TRUE, args[1], "acks are always multiple");
+            calls.add("ack " + args[0]);
+            return null;
+          case "basicNack":
+            assertEquals(Boolean.FALSE, args[1], "nacks are never multiple");
+            calls.add("nack " + args[0] + " " + args[2]);
+            return null;
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      });
+
+  @Test
+  void acksAFinishedPrefixOnce() {
+    AckTracker tracker = new AckTracker(channel, 100);
+    for (long tag = 1; tag <= 5; tag++) {
+      tracker.delivered(tag);
+    }
+    for (long tag = 1; tag <= 3; tag++) {
+      tracker.completed(tag);
+    }
+    tracker.flush();
+    assertEquals(List.of("ack 3"), calls);
+
+    tracker.flush();
+    assertEquals(List.of("ack 3"), calls, "nothing new finished");
+  }
+
+  @Test
+  void waitsForTheOldestDelivery() {
+    AckTracker tracker = new AckTracker(channel, 100);
+    for (long tag = 1; tag <= 4; tag++) {
+      tracker.delivered(tag);
+    }
+    tracker.completed(2);
+    tracker.completed(4);
+    tracker.flush();
+    assertEquals(List.of(), calls);
+
+    // tag 1 finishing out of order completes the prefix 1..2; 3 still holds back 4
+    tracker.completed(1);
+    tracker.flush();
+    assertEquals(List.of("ack 2"), calls);
+
+    tracker.completed(3);
+    tracker.flush();
+    assertEquals(List.of("ack 2", "ack 4"), calls);
+  }
+
+  @Test
+  void flushesWhenTheBatchFills() {
+    AckTracker tracker = new AckTracker(channel, 3);
+    for (long tag = 1; tag <= 4; tag++) {
+      tracker.delivered(tag);
+    }
+    tracker.completed(1);
+    tracker.completed(2);
+    assertEquals(List.of(), calls);
+    tracker.completed(3);
+    assertEquals(List.of("ack 3"), calls);
+  }
+
+  @Test
+  void aNackUnblocksTheAcksBehindIt() {
+    AckTracker tracker = new AckTracker(channel, 100);
+    for (long tag = 1; tag <= 3; tag++) {
+      tracker.delivered(tag);
+    }
+    tracker.completed(2);
+    tracker.completed(3);
+    tracker.rejected(1, true);
+    assertEquals(List.of("nack 1 true", "ack 3"), calls);
+  }
+
+  @Test
+  void aNackInTheMiddleIsNotCoveredByTheAck() {
+    AckTracker tracker = new AckTracker(channel, 100);
+    for (long tag = 1; tag <= 3; tag++) {
+      tracker.delivered(tag);
+    }
+    tracker.rejected(2, false);
+    tracker.completed(3);
+    tracker.completed(1);
+    tracker.flush();
+    // "ack 3" with multiple=true does not touch 2: the broker already settled it
+    assertEquals(List.of("nack 2 false", "ack 3"), calls);
+  }
+
+  @Test
+  void skipsTheAckOnAClosedChannel() {
+    AckTracker tracker = new AckTracker(channel, 100);
+    tracker.delivered(1);
+    tracker.completed(1);
+    open = false;
+    tracker.flush();
+    assertEquals(List.of(), calls);
+  }
+
+  @Test
+  void survivesAFailedAck() {
+    AckTracker tracker = new AckTracker(channel, 100);
+    tracker.delivered(1);
+    tracker.completed(1);
+    failAcks = true;
+    tracker.flush();
+    failAcks = false;
+
+    tracker.delivered(2);
+    tracker.completed(2);
+    tracker.flush();
+    assertEquals(List.of("ack 2"), calls);
+  }
+}
@@ -0,0 +1,67 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import common.LiftRideBatch;
+import common.LiftRideCodec;
+import common.beans.LiftRide;
+import common.beans.LiftRideMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LiftRideDecoderTest {
+
+  private static final Gson gson = new Gson();
+  private static final LiftRideMessage FIRST = new LiftRideMessage(7, 2024, 1, 110, new LiftRide(217, 21));
+  private static final LiftRideMessage SECOND = new LiftRideMessage(8, 2024, 2, 111, new LiftRide(5, 3));
+
+  @Test
+  void decodesJsonWithoutAContentType() {
+    assertEquals(List.of(FIRST), LiftRideDecoder.decode(null, json(FIRST)));
+    assertEquals(List.of(FIRST), LiftRideDecoder.decode("application/json", json(FIRST)));
+  }
+
+  @Test
+  void decodesTheBinaryCodec() {
+    assertEquals(List.of(FIRST), LiftRideDecoder.decode(LiftRideCodec.CONTENT_TYPE, LiftRideCodec.encode(FIRST)));
+  }
+
+  @Test
+  void decodesBinaryBatches() {
+    byte[] batch = LiftRideBatch.encode(List.of(LiftRideCodec.encode(FIRST), LiftRideCodec.encode(SECOND)));
+    assertEquals(List.of(FIRST, SECOND), LiftRideDecoder.decode(LiftRideBatch.BINARY_CONTENT_TYPE, batch));
+  }
+
+  @Test
+  void decodesJsonBatches() {
+    byte[] batch = LiftRideBatch.encode(List.of(json(FIRST), json(SECOND)));
+    assertEquals(List.of(FIRST, SECOND), LiftRideDecoder.decode(LiftRideBatch.JSON_CONTENT_TYPE, batch));
+  }
+
+  @Test
+  void rejectsBodiesThatDoNotMatchTheContentType() {
+    // JSON sent as binary, and binary sent as JSON
+    assertThrows(IllegalArgumentException.class, () -> LiftRideDecoder.decode(LiftRideCodec.CONTENT_TYPE, json(FIRST)));
+    assertThrows(JsonSyntaxException.class, () -> LiftRideDecoder.decode(null, LiftRideCodec.encode(FIRST)));
+    // a binary batch with a JSON frame
+    byte[] mixed = LiftRideBatch.encode(List.of(LiftRideCodec.encode(FIRST), json(SECOND)));
+    assertThrows(IllegalArgumentException.class,
+        () -> LiftRideDecoder.decode(LiftRideBatch.BINARY_CONTENT_TYPE, mixed));
+  }
+
+  @Test
+  void rejectsTruncatedBatches() {
+    byte[] batch = LiftRideBatch.encode(List.of(LiftRideCodec.encode(FIRST), LiftRideCodec.encode(SECOND)));
+    byte[] truncated = Arrays.copyOf(batch, batch.length - 1);
+    assertThrows(IllegalArgumentException.class,
+        () -> LiftRideDecoder.decode(LiftRideBatch.BINARY_CONTENT_TYPE, truncated));
+  }
+
+  private static byte[] json(LiftRideMessage message) {
+    return gson.toJson(message).getBytes(StandardCharsets.UTF_8);
+  }
+}
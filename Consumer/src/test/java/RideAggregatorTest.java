@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RideAggregatorTest {
+
+  @Test
+  void sumsDeltasPerKey() {
+    RideAggregator aggregator = new RideAggregator(8);
+    aggregator.add(7, 2024, 1, 110, 210);
+    aggregator.add(7, 2024, 1, 110, 50);
+    aggregator.add(7, 2024, 2, 110, 30);
+    assertEquals(2, aggregator.size());
+    assertEquals(Map.of(List.of(7, 2024, 1, 110), 260L, List.of(7, 2024, 2, 110), 30L), contents(aggregator));
+  }
+
+  @Test
+  void keepsCollidingKeysApart() {
+    // equal hashes: (k2 + 1) * 31 == k2 * 31 + 31
+    RideAggregator aggregator = new RideAggregator(8);
+    aggregator.add(0, 0, 1, 0, 1);
+    aggregator.add(0, 0, 0, 31, 2);
+    aggregator.add(0, 0, 1, 0, 10);
+    aggregator.add(0, 0, 0, 31, 20);
+    assertEquals(Map.of(List.of(0, 0, 1, 0), 11L, List.of(0, 0, 0, 31), 22L), contents(aggregator));
+  }
+
+  @Test
+  void growsPastItsExpectedSize() {
+    RideAggregator aggregator = new RideAggregator(1);
+    Map<List<Integer>, Long> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      int resort = random.nextInt(10);
+      int day = 1 + random.nextInt(3);
+      int skier = random.nextInt(2_000);
+      long delta = 10L * random.nextInt(50);
+      aggregator.add(resort, 2024, day, skier, delta);
+      expected.merge(List.of(resort, 2024, day, skier), delta, Long::sum);
+    }
+    assertEquals(expected.size(), aggregator.size());
+    assertEquals(expected, contents(aggregator));
+  }
+
+  @Test
+  void isEmptyAfterClear() {
+    RideAggregator aggregator = new RideAggregator(4);
+    for (int skier = 0; skier < 100; skier++) {
+      aggregator.add(1, 2024, 1, skier, 10);
+    }
+    aggregator.clear();
+    assertEquals(0, aggregator.size());
+    assertEquals(Map.of(), contents(aggregator));
+
+    // stale slots do not leak into the next batch's sums
+    aggregator.add(1, 2024, 1, 5, 7);
+    assertEquals(Map.of(List.of(1, 2024, 1, 5), 7L), contents(aggregator));
+  }
+
+  private static Map<List<Integer>, Long> contents(RideAggregator aggregator) {
+    Map<List<Integer>, Long> contents = new HashMap<>();
+    aggregator.forEach((k0, k1, k2, k3, sum) -> {
+      Long previous = contents.put(List.of(k0, k1, k2, k3), sum);
+      assertNull(previous, "key visited twice");
+    });
+    return contents;
+  }
+}
@@ -0,0 +1,140 @@
+import com.rabbitmq.client.AMQP;
+import common.LiftRideBatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single lift-ride payloads into one framed AMQP message.
+ * A batch is published when it reaches the batch size or when the oldest ride in it
+ * has waited the linger time, whichever comes first. Each submitter gets a future that
+ * completes when the batch carrying its ride has been published.
+ */
+public class BatchingPublisher {
+
+    /**
+     * Publishes one framed batch, e.g. through the channel pool or a confirm channel.
+     */
+    @FunctionalInterface
+    public interface FramePublisher {
+        CompletableFuture<Void> publish(AMQP.BasicProperties props, byte[] body);
+    }
+
+    private final FramePublisher framePublisher;
+    // tells the consumer how the rides inside the frame are encoded
+    private final AMQP.BasicProperties batchProperties;
+    private final int batchSize;
+    private final long lingerNanos;
+    // rides waiting for the flusher, bounded so a slow broker pushes back on the servlet
+    private final BlockingQueue<PendingRide> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public BatchingPublisher(FramePublisher framePublisher, String contentType, int batchSize,
+                             long lingerMicros, int queueCapacity) {
+        this.framePublisher = framePublisher;
+        this.batchProperties = new AMQP.BasicProperties.Builder().contentType(contentType).build();
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::runFlusher, "batch-publisher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a single ride payload for the next batch.
+     * Fails fast if the queue is full or the publisher has been closed.
+     */
+    public CompletableFuture<Void> submit(byte[] payload) {
+        PendingRide ride = new PendingRide(payload);
+        if (!running || !queue.offer(ride)) {
+            ride.future.completeExceptionally(new IOException("Batch publisher is not accepting rides"));
+        }
+        return ride.future;
+    }
+
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingRide> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                // Block for the first ride, then linger for the rest of the batch
+                PendingRide first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || queue.drainTo(batch, batchSize - batch.size()) == 0
+                            && !pollInto(batch, remaining)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // close() interrupts us; drain what is left before exiting
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    private boolean pollInto(List<PendingRide> batch, long timeoutNanos) throws InterruptedException {
+        PendingRide ride = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        if (ride == null) {
+            return false;
+        }
+        batch.add(ride);
+        return true;
+    }
+
+    private void flush(List<PendingRide> batch) {
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        for (PendingRide ride : batch) {
+            payloads.add(ride.payload);
+        }
+        CompletableFuture<Void> published;
+        try {
+            published = framePublisher.publish(batchProperties, LiftRideBatch.encode(payloads));
+        } catch (RuntimeException e) {
+            published = CompletableFuture.failedFuture(e);
+        }
+        published.whenComplete((ignored, error) -> {
+            for (PendingRide ride : batch) {
+                if (error == null) {
+                    ride.future.complete(null);
+                } else {
+                    ride.future.completeExceptionally(error);
+                }
+            }
+        });
+    }
+
+    private static class PendingRide {
+        private final byte[] payload;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingRide(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
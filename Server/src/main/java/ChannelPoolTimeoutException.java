@@ -0,0 +1,13 @@
+import java.io.IOException;
+
+/**
+ * Thrown when the channel pool cannot hand out a channel within its borrow timeout.
+ * The servlet maps it to a 503 so clients can back off instead of piling up on the pool.
+ */
+public class ChannelPoolTimeoutException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ChannelPoolTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -1,12 +1,65 @@
+import java.util.List;
+
 public class Config {
     public static final String RABBITMQ_HOST = "44.225.254.46";
     public static final String RABBITMQ_USERNAME = "admin";
     public static final String RABBITMQ_PASSWORD = "050709";
     public static final int CHANNEL_POOL_SIZE = 10;
+    public static final int CHANNEL_POOL_MAX_SIZE = 64;
+    public static final long CHANNEL_BORROW_TIMEOUT_MS = 50;
+    // Channels idle this long are closed until the pool is back at CHANNEL_POOL_SIZE; 0 keeps them all
+    public static final long CHANNEL_IDLE_TIMEOUT_MS = 60_000;
+
+    // POST mode: false keeps the synchronous publish on the request thread,
+    // true completes the request from the RabbitMQ publisher-confirm callback
+    public static final boolean ASYNC_POST = false;
+    public static final int CONFIRM_CHANNEL_COUNT = 10;
+    public static final long PUBLISH_TIMEOUT_MS = 5_000;
+
+    // Wire format between Server and Consumer: false publishes Gson JSON, true the LiftRideCodec binary layout.
+    // The Consumer reads both by content type, so switch this on once every Consumer is upgraded.
+    public static final boolean BINARY_WIRE_FORMAT = false;
+
+    // Micro-batching: publish one framed message per BATCH_SIZE rides or per BATCH_LINGER_MICROS
+    public static final boolean BATCH_PUBLISH = false;
+    public static final int BATCH_SIZE = 100;
+    public static final long BATCH_LINGER_MICROS = 500;
+    public static final int BATCH_QUEUE_CAPACITY = 10_000;
+
+    // Self-tuning pool size: every REDIS_POOL_TUNE_INTERVAL_MS grow maxTotal while borrows queue or wait longer
+    // than REDIS_POOL_TARGET_WAIT_MICROS on average, shrink it while the busiest moment used under half the
+    // pool, staying within REDIS_POOL_MIN_TOTAL..REDIS_POOL_MAX_TOTAL. REDIS_MAX_TOTAL is the starting size.
+    public static final boolean REDIS_POOL_AUTOTUNE = false;
+    public static final long REDIS_POOL_TUNE_INTERVAL_MS = 5_000;
+    public static final long REDIS_POOL_TARGET_WAIT_MICROS = 500;
+    public static final int REDIS_POOL_MIN_TOTAL = 16;
+    public static final int REDIS_POOL_MAX_TOTAL = 512;
+    // Read replicas ("host:port") for the GET endpoints, standalone mode only; empty reads from the primary.
+    // Writes (the Consumer) always go to the primary.
+    public static final List<String> REDIS_READ_REPLICAS = List.of();
+    public static final long REDIS_REPLICA_CHECK_MS = 1_000;
+    // Read-your-writes: take a replica out of rotation while it is more than REDIS_REPLICA_MAX_LAG_BYTES
+    // of replication stream behind the primary, or while its lag can not be measured, so reads fall back to
+    // the primary instead
+    public static final boolean REDIS_READ_YOUR_WRITES = false;
+    public static final long REDIS_REPLICA_MAX_LAG_BYTES = 64 * 1024;
+
+    // Default for GET .../skiers when no ?mode= is given: false = exact SCARD, true = HyperLogLog PFCOUNT.
+    // Approximate counts need the Consumer's UNIQUE_SKIERS_STORE set to "hll" or "both".
+    public static final boolean UNIQUE_SKIERS_APPROX = false;
+
+    // Upper bound on skierIDs per GET/POST /skiers/vertical lookup (one pipeline each)
+    public static final int BULK_VERTICAL_MAX_SKIERS = 10_000;
+
+    // GET /resorts/{resortID}/seasons/{seasonID}/leaderboard?top=N
+    public static final int LEADERBOARD_DEFAULT_TOP = 10;
+    public static final int LEADERBOARD_MAX_TOP = 1_000;
 
-    public static final String REDIS_HOST = "54.244.202.209";
-    public static final int REDIS_PORT = 6379;
-    public static final int REDIS_MAX_TOTAL = 100;
-    public static final int REDIS_MAX_IDLE = 20;
-    public static final int REDIS_MIN_IDLE = 10;
+    // Near-cache for the GET endpoints (switched by SharedConfig.NEAR_CACHE), invalidated by the
+    // Consumer's feed on INVALIDATION_CHANNEL. The TTLs bound how stale each endpoint may get if
+    // invalidations are delayed or lost.
+    public static final int NEAR_CACHE_MAX_ENTRIES = 100_000;
+    public static final long NEAR_CACHE_UNIQUE_SKIERS_TTL_MS = 1_000;
+    public static final long NEAR_CACHE_SKIER_DAY_TTL_MS = 5_000;
+    public static final long NEAR_CACHE_TOTAL_VERTICAL_TTL_MS = 5_000;
 }
@@ -0,0 +1,137 @@
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes messages on a fixed set of channels running in publisher-confirm mode.
+ * Every publish returns a future that completes once the broker confirms the message,
+ * so callers never block a thread waiting for the broker.
+ */
+public class ConfirmPublisher {
+
+    // used to open (and re-open) confirm channels
+    private final Connection connection;
+    // one slot per confirm channel, picked round-robin
+    private final ConfirmChannel[] channels;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ConfirmPublisher(Connection connection, int channelCount) {
+        this.connection = connection;
+        this.channels = new ConfirmChannel[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            channels[i] = new ConfirmChannel();
+        }
+    }
+
+    /**
+     * Publish a message and return a future that is completed by the confirm callback.
+     * The future completes normally on a broker ack, and exceptionally on a nack or channel shutdown.
+     */
+    public CompletableFuture<Void> publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+        int index = Math.floorMod(next.getAndIncrement(), channels.length);
+        return channels[index].publish(exchange, routingKey, props, body);
+    }
+
+    public void close() {
+        for (ConfirmChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    /**
+     * A single confirm channel with its outstanding (unconfirmed) publishes keyed by sequence number.
+     * Publishing is synchronized per channel because the sequence number and the publish must line up;
+     * the broker round-trip itself happens outside the lock.
+     */
+    private class ConfirmChannel {
+        private Channel channel;
+        private ConcurrentNavigableMap<Long, CompletableFuture<Void>> outstanding;
+
+        synchronized CompletableFuture<Void> publish(String exchange, String routingKey,
+                                                     AMQP.BasicProperties props, byte[] body) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            long seqNo = -1;
+            try {
+                ensureOpen();
+                seqNo = channel.getNextPublishSeqNo();
+                outstanding.put(seqNo, future);
+                channel.basicPublish(exchange, routingKey, props, body);
+            } catch (IOException | RuntimeException e) {
+                if (seqNo >= 0) {
+                    outstanding.remove(seqNo);
+                }
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        /**
+         * Open a fresh confirm channel if there is none or the previous one was closed.
+         * Each channel gets its own outstanding map, so a late shutdown of an old channel
+         * can never fail publishes that went out on its replacement.
+         */
+        private void ensureOpen() throws IOException {
+            if (channel != null && channel.isOpen()) {
+                return;
+            }
+            Channel chan = connection.createChannel();
+            chan.confirmSelect();
+            ConcurrentNavigableMap<Long, CompletableFuture<Void>> pending = new ConcurrentSkipListMap<>();
+            chan.addConfirmListener(
+                    (seqNo, multiple) -> confirm(pending, seqNo, multiple, null),
+                    (seqNo, multiple) -> confirm(pending, seqNo, multiple,
+                            new IOException("Broker nacked message " + seqNo)));
+            chan.addShutdownListener(cause -> failAll(pending, cause));
+            channel = chan;
+            outstanding = pending;
+        }
+
+        synchronized void close() {
+            try {
+                if (channel != null && channel.isOpen()) {
+                    channel.close();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void confirm(ConcurrentNavigableMap<Long, CompletableFuture<Void>> pending,
+                                long seqNo, boolean multiple, Exception failure) {
+        if (multiple) {
+            Map<Long, CompletableFuture<Void>> confirmed = pending.headMap(seqNo, true);
+            for (CompletableFuture<Void> future : confirmed.values()) {
+                complete(future, failure);
+            }
+            confirmed.clear();
+        } else {
+            CompletableFuture<Void> future = pending.remove(seqNo);
+            if (future != null) {
+                complete(future, failure);
+            }
+        }
+    }
+
+    private static void failAll(ConcurrentNavigableMap<Long, CompletableFuture<Void>> pending, Exception cause) {
+        for (CompletableFuture<Void> future : pending.values()) {
+            future.completeExceptionally(cause);
+        }
+        pending.clear();
+    }
+
+    private static void complete(CompletableFuture<Void> future, Exception failure) {
+        if (failure == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import beans.NearCacheMetrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A size-bounded, in-process cache with a time-to-live per entry and LRU eviction.
+ *
+ * Entries are spread over independently locked segments, each an access-ordered LinkedHashMap,
+ * so concurrent GETs for different keys rarely contend. Loads run outside the lock. A load that
+ * overlaps an invalidation of its key is returned but not cached, so an invalidation can never be
+ * undone by a read that started before it. Each segment versions its keys with a small striped array
+ * of counters, so an invalidation only stops the in-flight loads of keys that share its stripe.
+ * Null results are cached too ("Data not found").
+ */
+public class NearCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+    // version counters per segment; the bits above the segment index pick one
+    private static final int VERSION_STRIPES = 64;
+
+    private final Segment<K, V>[] segments;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public NearCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[SEGMENTS];
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(segmentSize);
+        }
+    }
+
+    /**
+     * Return the cached value for key, or load, cache and return it if absent or expired.
+     */
+    public V get(K key, Supplier<V> loader) {
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        int stripe = stripeFor(hash);
+        long version;
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.value;
+                }
+                segment.entries.remove(key);
+            }
+            version = segment.versions[stripe];
+        }
+        misses.increment();
+        V value = loader.get();
+        synchronized (segment) {
+            if (segment.versions[stripe] == version) {
+                segment.entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(K key) {
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.versions[stripeFor(hash)]++;
+            if (segment.entries.remove(key) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                for (int i = 0; i < VERSION_STRIPES; i++) {
+                    segment.versions[i]++;
+                }
+                invalidations.add(segment.entries.size());
+                segment.entries.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public NearCacheMetrics getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+        return new NearCacheMetrics(
+                size(),
+                maxSize,
+                TimeUnit.NANOSECONDS.toMillis(ttlNanos),
+                hitCount,
+                missCount,
+                lookups == 0 ? 0.0 : (double) hitCount / lookups,
+                invalidations.sum());
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private static int stripeFor(int hash) {
+        return (hash >>> Integer.numberOfTrailingZeros(SEGMENTS)) & (VERSION_STRIPES - 1);
+    }
+
+    private static class Segment<K, V> {
+        // a key's stripe is bumped by every invalidation of it, so in-flight loads of the keys in that
+        // stripe know not to cache their result
+        private final long[] versions = new long[VERSION_STRIPES];
+        private final Map<K, Entry<V>> entries;
+
+        Segment(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
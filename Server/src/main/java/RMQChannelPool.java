@@ -4,61 +4,273 @@
  * The examples supplement Chapter 7 of the Foundations of Scalable Systems, O'Reilly Media 2022
  */
 
+import beans.ChannelPoolMetrics;
 import com.rabbitmq.client.Channel;
 
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 /**
- * A simple RabbitMQ channel pool based on a BlockingQueue implementation
+ * A lock-free RabbitMQ channel pool.
  *
+ * Idle channels live in a fixed array of slots. Each thread starts looking at its own home slot,
+ * so with fewer threads than slots a borrow/return pair is two uncontended CAS operations.
+ * The pool starts with coreSize channels and grows on demand up to maxSize; a borrow scans the slots
+ * twice before it grows, since a channel is often returned while the first scan is under way. Closed
+ * channels are dropped on borrow or return and replaced by the growth path. A reaper thread closes
+ * channels left idle for the idle timeout, but never takes the pool below coreSize. A borrow that finds
+ * no channel within the borrow timeout fails with a ChannelPoolTimeoutException instead of blocking.
  */
 public class RMQChannelPool {
 
-    // used to store and distribute channels
-    private final BlockingQueue<Channel> pool;
-    // fixed size pool
-    private int capacity;
+    // how long to park between scans while the pool is exhausted
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // idle channels, a null slot is empty
+    private final AtomicReferenceArray<Channel> slots;
+    // System.nanoTime() when each slot's channel was returned
+    private final AtomicLongArray idleSince;
+    // live channels, idle or borrowed
+    private final AtomicInteger size = new AtomicInteger();
+    private final int coreSize;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutNanos;
     // used to create channels
-    private RMQChannelFactory factory;
+    private final RMQChannelFactory factory;
+    // closes idle channels, null without an idle timeout
+    private final Thread reaper;
+
+    // borrow-wait metrics for sizing the pool
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitedBorrows = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder replacedChannels = new LongAdder();
+    private final LongAdder idleClosedChannels = new LongAdder();
 
 
-    public RMQChannelPool(int maxSize, RMQChannelFactory factory) {
-        this.capacity = maxSize;
-        pool = new LinkedBlockingQueue<>(capacity);
+    /**
+     * @param idleTimeoutMillis close channels idle this long while the pool is above coreSize, 0 to never
+     */
+    public RMQChannelPool(int coreSize, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis,
+                          RMQChannelFactory factory) {
+        this.coreSize = Math.min(coreSize, maxSize);
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.slots = new AtomicReferenceArray<>(maxSize);
+        this.idleSince = new AtomicLongArray(maxSize);
         this.factory = factory;
-        for (int i = 0; i < capacity; i++) {
-            Channel chan;
+        for (int i = 0; i < this.coreSize; i++) {
             try {
-                chan = factory.create();
-                pool.put(chan);
-            } catch (IOException | InterruptedException ex) {
+                idleSince.set(i, System.nanoTime());
+                slots.set(i, factory.create());
+                size.incrementAndGet();
+            } catch (IOException ex) {
                 Logger.getLogger(RMQChannelPool.class.getName()).log(Level.SEVERE, null, ex);
             }
-
+        }
+        if (idleTimeoutMillis > 0) {
+            this.reaper = new Thread(this::runReaper, "channel-pool-reaper");
+            this.reaper.setDaemon(true);
+            this.reaper.start();
+        } else {
+            this.reaper = null;
         }
     }
 
     public Channel borrowObject() throws IOException {
-
-        try {
-            return pool.take();
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Error: no channels available" + e.toString());
+        long start = System.nanoTime();
+        Channel channel = acquire();
+        if (channel == null) {
+            waitedBorrows.increment();
+            while ((channel = acquire()) == null) {
+                if (System.nanoTime() - start >= borrowTimeoutNanos) {
+                    timeouts.increment();
+                    throw new ChannelPoolTimeoutException("Error: no channels available within "
+                            + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + " ms");
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
         }
+        borrows.increment();
+        return channel;
     }
 
-    public void returnObject(Channel channel) throws Exception {
-        if (channel != null) {
-            pool.add(channel);
+    public void returnObject(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        if (!channel.isOpen()) {
+            // health check failed, let the growth path replace it
+            discard();
+            return;
+        }
+        int home = homeSlot();
+        long now = System.nanoTime();
+        for (int i = 0; i < maxSize; i++) {
+            int index = (home + i) % maxSize;
+            if (slots.get(index) == null) {
+                // stamped before the slot is filled, so the reaper never sees a stale time for it;
+                // losing the race below only makes another channel look younger
+                idleSince.set(index, now);
+                if (slots.compareAndSet(index, null, channel)) {
+                    return;
+                }
+            }
         }
+        // Every slot is full, which only happens if a foreign channel was returned
+        closeQuietly(channel);
+        size.decrementAndGet();
+    }
+
+    public ChannelPoolMetrics getMetrics() {
+        long waited = waitedBorrows.sum();
+        return new ChannelPoolMetrics(
+                size.get(),
+                maxSize,
+                borrows.sum(),
+                waited,
+                timeouts.sum(),
+                waited == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / waited),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()),
+                replacedChannels.sum(),
+                idleClosedChannels.sum());
     }
 
     public void close() {
-        // pool.close();
+        if (reaper != null) {
+            reaper.interrupt();
+        }
+        for (int i = 0; i < maxSize; i++) {
+            Channel channel = slots.getAndSet(i, null);
+            if (channel != null) {
+                closeQuietly(channel);
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Close the channels that have been idle for the idle timeout, as long as the pool stays at or
+     * above coreSize. Returns how many were closed.
+     */
+    int reapIdle() {
+        if (idleTimeoutNanos <= 0) {
+            return 0;
+        }
+        int closed = 0;
+        long now = System.nanoTime();
+        for (int i = 0; i < maxSize; i++) {
+            Channel channel = slots.get(i);
+            if (channel == null || now - idleSince.get(i) < idleTimeoutNanos) {
+                continue;
+            }
+            int current = size.get();
+            if (current <= coreSize) {
+                break;
+            }
+            if (!size.compareAndSet(current, current - 1)) {
+                // a borrow grew or dropped a channel meanwhile, look at this slot again
+                i--;
+                continue;
+            }
+            if (slots.compareAndSet(i, channel, null)) {
+                closeQuietly(channel);
+                idleClosedChannels.increment();
+                closed++;
+            } else {
+                // borrowed meanwhile
+                size.incrementAndGet();
+            }
+        }
+        return closed;
+    }
+
+    private void runReaper() {
+        long intervalNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), idleTimeoutNanos / 4);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reapIdle();
+        }
+    }
+
+    /**
+     * Take an idle, open channel starting at this thread's home slot, or create one if below maxSize.
+     * Returns null if the pool is exhausted.
+     */
+    private Channel acquire() throws IOException {
+        Channel channel = scan();
+        if (channel == null) {
+            channel = scan();
+        }
+        return channel != null ? channel : grow();
+    }
+
+    private Channel scan() {
+        int home = homeSlot();
+        for (int i = 0; i < maxSize; i++) {
+            int index = (home + i) % maxSize;
+            Channel channel = slots.get(index);
+            if (channel != null && slots.compareAndSet(index, channel, null)) {
+                if (channel.isOpen()) {
+                    return channel;
+                }
+                discard();
+            }
+        }
+        return null;
+    }
+
+    private Channel grow() throws IOException {
+        int current;
+        while ((current = size.get()) < maxSize) {
+            if (size.compareAndSet(current, current + 1)) {
+                try {
+                    return factory.create();
+                } catch (IOException | RuntimeException e) {
+                    size.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void discard() {
+        size.decrementAndGet();
+        replacedChannels.increment();
+    }
+
+    private int homeSlot() {
+        return (int) (Thread.currentThread().getId() % maxSize);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        } catch (Exception e) {
+            Logger.getLogger(RMQChannelPool.class.getName()).log(Level.WARNING, null, e);
+        }
     }
-}
\ No newline at end of file
+}
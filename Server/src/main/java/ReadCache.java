@@ -0,0 +1,166 @@
+import beans.NearCacheMetrics;
+import common.AsyncLog;
+import common.SharedConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-caches for the three GET endpoints, kept fresh by the Consumer's invalidation feed.
+ *
+ * After each Redis pipeline the Consumer publishes one line per skier-day it wrote to
+ * SharedConfig.INVALIDATION_CHANNEL, formatted "resortID,seasonID,dayID,skierID". Each line evicts the
+ * resort-day unique-skier count, the skier-day vertical and the skier's season and all-time totals.
+ * Whenever the subscription is (re)established the caches are cleared, since lines published while
+ * we were not subscribed are lost. The per-endpoint TTL bounds staleness if the feed stalls.
+ */
+public class ReadCache {
+
+    private static final AsyncLog.Site UNREADABLE_LINE = AsyncLog.site(ReadCache.class, AsyncLog.Level.WARN,
+            "Unreadable invalidation line, clearing near-caches: {}");
+    private static final AsyncLog.Site FEED_LOST = AsyncLog.site(ReadCache.class, AsyncLog.Level.WARN,
+            "Invalidation feed lost, resubscribing: {}");
+
+    private final NearCache<String, Long> uniqueSkiers =
+            new NearCache<>(Config.NEAR_CACHE_MAX_ENTRIES, Config.NEAR_CACHE_UNIQUE_SKIERS_TTL_MS);
+    private final NearCache<String, String> skierDayVertical =
+            new NearCache<>(Config.NEAR_CACHE_MAX_ENTRIES, Config.NEAR_CACHE_SKIER_DAY_TTL_MS);
+    private final NearCache<String, String> totalVertical =
+            new NearCache<>(Config.NEAR_CACHE_MAX_ENTRIES, Config.NEAR_CACHE_TOTAL_VERTICAL_TTL_MS);
+
+    private final Thread subscriber;
+    private volatile JedisPubSub pubSub;
+    private volatile boolean running = true;
+
+    public ReadCache() {
+        this.subscriber = new Thread(this::runSubscriber, "near-cache-invalidations");
+        this.subscriber.setDaemon(true);
+        this.subscriber.start();
+    }
+
+    public NearCache<String, Long> getUniqueSkiers() {
+        return uniqueSkiers;
+    }
+
+    public NearCache<String, String> getSkierDayVertical() {
+        return skierDayVertical;
+    }
+
+    public NearCache<String, String> getTotalVertical() {
+        return totalVertical;
+    }
+
+    public static String uniqueSkiersKey(int resortID, int seasonID, int dayID, boolean approx) {
+        return resortID + ":" + seasonID + ":" + dayID + (approx ? ":hll" : "");
+    }
+
+    public static String skierDayKey(int resortID, int seasonID, int dayID, int skierID) {
+        return resortID + ":" + seasonID + ":" + dayID + ":" + skierID;
+    }
+
+    /**
+     * field is the season ID, or "all" for the all-time total
+     */
+    public static String totalVerticalKey(int resortID, int skierID, String field) {
+        return resortID + ":" + skierID + ":" + field;
+    }
+
+    public Map<String, NearCacheMetrics> getMetrics() {
+        Map<String, NearCacheMetrics> metrics = new LinkedHashMap<>();
+        metrics.put("uniqueSkiers", uniqueSkiers.getMetrics());
+        metrics.put("skierDayVertical", skierDayVertical.getMetrics());
+        metrics.put("totalVertical", totalVertical.getMetrics());
+        return metrics;
+    }
+
+    public void close() {
+        running = false;
+        JedisPubSub current = pubSub;
+        if (current != null && current.isSubscribed()) {
+            try {
+                current.unsubscribe();
+            } catch (RuntimeException e) {
+                // connection already gone, the interrupt below ends the loop
+            }
+        }
+        subscriber.interrupt();
+    }
+
+    private void invalidateAll() {
+        uniqueSkiers.invalidateAll();
+        skierDayVertical.invalidateAll();
+        totalVertical.invalidateAll();
+    }
+
+    private void invalidate(int resortID, int seasonID, int dayID, int skierID) {
+        uniqueSkiers.invalidate(uniqueSkiersKey(resortID, seasonID, dayID, false));
+        uniqueSkiers.invalidate(uniqueSkiersKey(resortID, seasonID, dayID, true));
+        skierDayVertical.invalidate(skierDayKey(resortID, seasonID, dayID, skierID));
+        totalVertical.invalidate(totalVerticalKey(resortID, skierID, String.valueOf(seasonID)));
+        totalVertical.invalidate(totalVerticalKey(resortID, skierID, "all"));
+    }
+
+    /**
+     * Apply one invalidation message: newline-separated "resortID,seasonID,dayID,skierID" lines.
+     */
+    private void onInvalidation(String message) {
+        int start = 0;
+        while (start < message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            try {
+                int c1 = message.indexOf(',', start);
+                int c2 = message.indexOf(',', c1 + 1);
+                int c3 = message.indexOf(',', c2 + 1);
+                invalidate(Integer.parseInt(message, start, c1, 10),
+                        Integer.parseInt(message, c1 + 1, c2, 10),
+                        Integer.parseInt(message, c2 + 1, c3, 10),
+                        Integer.parseInt(message, c3 + 1, end, 10));
+            } catch (RuntimeException e) {
+                // a line we cannot read may hide any key, so drop everything
+                UNREADABLE_LINE.log(e.getMessage());
+                invalidateAll();
+            }
+            start = end + 1;
+        }
+    }
+
+    private void runSubscriber() {
+        while (running) {
+            JedisPubSub current = new JedisPubSub() {
+                @Override
+                public void onSubscribe(String channel, int subscribedChannels) {
+                    invalidateAll();
+                }
+
+                @Override
+                public void onMessage(String channel, String message) {
+                    onInvalidation(message);
+                }
+            };
+            pubSub = current;
+            try (Jedis jedis = new Jedis(SharedConfig.REDIS_HOST, SharedConfig.REDIS_PORT)) {
+                // blocks until unsubscribed or the connection drops
+                jedis.subscribe(current, SharedConfig.INVALIDATION_CHANNEL);
+            } catch (RuntimeException e) {
+                if (running) {
+                    FEED_LOST.log(e.getMessage());
+                }
+            }
+            // anything published from here until the next onSubscribe is missed
+            invalidateAll();
+            if (running) {
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
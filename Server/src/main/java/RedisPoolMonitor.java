@@ -0,0 +1,144 @@
+import beans.RedisPoolMetrics;
+import common.AsyncLog;
+import common.RedisClient;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Gauges for RedisClient's connection pools, and for any other pools registered with it such as the
+ * read replicas', and with Config.REDIS_POOL_AUTOTUNE a tuner that sizes each pool's maxTotal from what
+ * borrowers actually experience.
+ *
+ * The tuner samples every pool's active count every SAMPLE_MS and decides every REDIS_POOL_TUNE_INTERVAL_MS:
+ * if the pool had borrows and callers were queued or the mean borrow wait exceeded
+ * REDIS_POOL_TARGET_WAIT_MICROS, maxTotal grows by a quarter; if nobody waited and even the busiest
+ * sample used less than half the pool, it shrinks by a tenth, but never below twice that peak.
+ * Both stay within REDIS_POOL_MIN_TOTAL..REDIS_POOL_MAX_TOTAL.
+ */
+public class RedisPoolMonitor {
+
+    private static final AsyncLog.Site RESIZED = AsyncLog.site(RedisPoolMonitor.class, AsyncLog.Level.INFO,
+            "Redis pool {} maxTotal now {}");
+
+    private static final long SAMPLE_MS = 100;
+
+    // per node, tuner thread only
+    private final Map<String, TuningState> states = new HashMap<>();
+    // RedisClient's pools first, then the registered ones
+    private final List<Supplier<Map<String, Pool<Connection>>>> sources = new CopyOnWriteArrayList<>();
+    private final Thread tuner;
+
+    public RedisPoolMonitor() {
+        sources.add(RedisClient::getPools);
+        if (Config.REDIS_POOL_AUTOTUNE) {
+            this.tuner = new Thread(this::runTuner, "redis-pool-tuner");
+            this.tuner.setDaemon(true);
+            this.tuner.start();
+        } else {
+            this.tuner = null;
+        }
+    }
+
+    /**
+     * Watch, and tune, more pools keyed by "host:port", e.g. ReplicaRouter::getPools.
+     */
+    public void register(Supplier<Map<String, Pool<Connection>>> pools) {
+        sources.add(pools);
+    }
+
+    public List<RedisPoolMetrics> getMetrics() {
+        List<RedisPoolMetrics> metrics = new ArrayList<>();
+        for (Map.Entry<String, Pool<Connection>> entry : pools().entrySet()) {
+            Pool<Connection> pool = entry.getValue();
+            metrics.add(new RedisPoolMetrics(
+                    entry.getKey(),
+                    pool.getMaxTotal(),
+                    pool.getNumActive(),
+                    pool.getNumIdle(),
+                    pool.getNumWaiters(),
+                    pool.getBorrowedCount(),
+                    TimeUnit.NANOSECONDS.toMicros(pool.getMeanBorrowWaitDuration().toNanos()),
+                    TimeUnit.NANOSECONDS.toMicros(pool.getMaxBorrowWaitDuration().toNanos())));
+        }
+        return metrics;
+    }
+
+    public void close() {
+        if (tuner != null) {
+            tuner.interrupt();
+        }
+    }
+
+    private void runTuner() {
+        long samplesPerDecision = Math.max(1, Config.REDIS_POOL_TUNE_INTERVAL_MS / SAMPLE_MS);
+        long samples = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(SAMPLE_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            boolean decide = ++samples % samplesPerDecision == 0;
+            for (Map.Entry<String, Pool<Connection>> entry : pools().entrySet()) {
+                TuningState state = states.computeIfAbsent(entry.getKey(), node -> new TuningState());
+                Pool<Connection> pool = entry.getValue();
+                state.sample(pool);
+                if (decide) {
+                    int maxTotal = state.decide(pool);
+                    if (maxTotal != pool.getMaxTotal()) {
+                        pool.setMaxTotal(maxTotal);
+                        RESIZED.log(entry.getKey(), maxTotal);
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<String, Pool<Connection>> pools() {
+        Map<String, Pool<Connection>> pools = new LinkedHashMap<>();
+        for (Supplier<Map<String, Pool<Connection>>> source : sources) {
+            pools.putAll(source.get());
+        }
+        return pools;
+    }
+
+    private static class TuningState {
+        private long lastBorrowed;
+        private int peakActive;
+        private boolean queued;
+
+        void sample(Pool<Connection> pool) {
+            peakActive = Math.max(peakActive, pool.getNumActive());
+            queued |= pool.getNumWaiters() > 0;
+        }
+
+        /**
+         * The maxTotal for the next interval; resets the interval's observations.
+         */
+        int decide(Pool<Connection> pool) {
+            long borrowed = pool.getBorrowedCount();
+            boolean busy = borrowed > lastBorrowed;
+            long meanWaitMicros = TimeUnit.NANOSECONDS.toMicros(pool.getMeanBorrowWaitDuration().toNanos());
+            int maxTotal = pool.getMaxTotal();
+            int next = maxTotal;
+            if (busy && (queued || meanWaitMicros > Config.REDIS_POOL_TARGET_WAIT_MICROS)) {
+                next = maxTotal + Math.max(1, maxTotal / 4);
+            } else if (!queued && peakActive * 2 < maxTotal) {
+                next = Math.max(peakActive * 2, maxTotal - Math.max(1, maxTotal / 10));
+            }
+            lastBorrowed = borrowed;
+            peakActive = 0;
+            queued = false;
+            return Math.min(Config.REDIS_POOL_MAX_TOTAL, Math.max(Config.REDIS_POOL_MIN_TOTAL, next));
+        }
+    }
+}
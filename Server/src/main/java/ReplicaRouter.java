@@ -0,0 +1,260 @@
+import beans.ReplicaMetrics;
+import common.AsyncLog;
+import common.RedisClient;
+import common.SharedConfig;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Sends the GET endpoints' reads to Redis read replicas, so dashboard traffic does not compete with
+ * the Consumer's writes on the primary.
+ *
+ * Each read goes to the in-rotation replica with the fewest reads in flight (least outstanding requests),
+ * ties broken round-robin. A checker thread runs INFO replication on every replica each
+ * REDIS_REPLICA_CHECK_MS: a replica that does not answer, or whose link to the primary is down, takes no
+ * reads until a later check passes. A read that fails to reach a replica takes it out of rotation and is
+ * retried on the primary; one that finds the replica's pool exhausted is retried on the primary only.
+ * With no replica in rotation reads go to the primary. Replica pools and connections use the primary's
+ * settings (RedisClient.getPoolConfig() and getClientConfig()).
+ *
+ * With REDIS_READ_YOUR_WRITES the checker also compares each replica's replication offset with the
+ * primary's, and a replica more than REDIS_REPLICA_MAX_LAG_BYTES behind stays out of rotation until it
+ * catches up. So does a replica whose lag can not be measured, e.g. while the primary's offset can not
+ * be read: reads then go to the primary rather than to a replica that may be arbitrarily stale.
+ */
+public class ReplicaRouter {
+
+    private static final AsyncLog.Site REPLICA_DOWN = AsyncLog.site(ReplicaRouter.class, AsyncLog.Level.WARN,
+            "Read replica {} out of rotation: {}");
+    private static final AsyncLog.Site REPLICA_UP = AsyncLog.site(ReplicaRouter.class, AsyncLog.Level.INFO,
+            "Read replica {} back in rotation");
+
+    private final Replica[] replicas;
+    private final AtomicInteger nextStart = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final Thread checker;
+    private volatile boolean running = true;
+
+    public ReplicaRouter(List<String> nodes) {
+        this.replicas = new Replica[nodes.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new Replica(HostAndPort.from(nodes.get(i)));
+        }
+        this.checker = new Thread(this::runChecker, "redis-replica-checker");
+        this.checker.setDaemon(true);
+        this.checker.start();
+    }
+
+    /**
+     * Run a read on the least busy replica in rotation, or on the primary if there is none.
+     */
+    public <T> T read(UnifiedJedis primary, Function<UnifiedJedis, T> read) {
+        Replica replica = pick();
+        if (replica == null) {
+            primaryReads.increment();
+            return read.apply(primary);
+        }
+        replica.outstanding.incrementAndGet();
+        try {
+            T result = read.apply(replica.client);
+            replica.reads.increment();
+            return result;
+        } catch (JedisConnectionException e) {
+            replica.failedReads.increment();
+            replica.update(false, replica.lagBytes, e.getMessage());
+            primaryReads.increment();
+            return read.apply(primary);
+        } catch (JedisException e) {
+            if (!(e.getCause() instanceof NoSuchElementException)) {
+                throw e;
+            }
+            // no connection free within REDIS_MAX_WAIT_MS: the replica is busy, not broken
+            replica.failedReads.increment();
+            primaryReads.increment();
+            return read.apply(primary);
+        } finally {
+            replica.outstanding.decrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        List<ReplicaMetrics> replicaMetrics = new ArrayList<>(replicas.length);
+        for (Replica replica : replicas) {
+            replicaMetrics.add(new ReplicaMetrics(replica.node.toString(), replica.healthy, replica.inRotation,
+                    replica.lagBytes, replica.outstanding.get(), replica.reads.sum(), replica.failedReads.sum()));
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("replicas", replicaMetrics);
+        metrics.put("primaryReads", primaryReads.sum());
+        return metrics;
+    }
+
+    /**
+     * The connection pool of every replica, keyed by "host:port", for RedisPoolMonitor.
+     */
+    public Map<String, Pool<Connection>> getPools() {
+        Map<String, Pool<Connection>> pools = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            pools.put(replica.node.toString(), replica.client.getPool());
+        }
+        return pools;
+    }
+
+    public void close() {
+        running = false;
+        checker.interrupt();
+        for (Replica replica : replicas) {
+            replica.client.close();
+        }
+    }
+
+    private Replica pick() {
+        int start = replicas.length > 1 ? Math.floorMod(nextStart.getAndIncrement(), replicas.length) : 0;
+        Replica best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.length; i++) {
+            Replica replica = replicas[(start + i) % replicas.length];
+            if (replica.inRotation) {
+                int outstanding = replica.outstanding.get();
+                if (outstanding < bestOutstanding) {
+                    best = replica;
+                    bestOutstanding = outstanding;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void runChecker() {
+        Jedis primary = null;
+        while (running) {
+            // -1 when lag is not checked or the primary can not be reached
+            long primaryOffset = -1;
+            if (Config.REDIS_READ_YOUR_WRITES) {
+                try {
+                    if (primary == null) {
+                        primary = new Jedis(new HostAndPort(SharedConfig.REDIS_HOST, SharedConfig.REDIS_PORT),
+                                RedisClient.getClientConfig());
+                    }
+                    primaryOffset = Long.parseLong(infoField(primary.info("replication"), "master_repl_offset"));
+                } catch (RuntimeException e) {
+                    primary = closeQuietly(primary);
+                }
+            }
+            for (Replica replica : replicas) {
+                replica.check(primaryOffset);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(Config.REDIS_REPLICA_CHECK_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        closeQuietly(primary);
+        for (Replica replica : replicas) {
+            replica.probe = closeQuietly(replica.probe);
+        }
+    }
+
+    /**
+     * Value of one "field:value" line of an INFO reply, or null if it is missing.
+     */
+    /**
+     * Whether a replica takes reads. With read-your-writes it must be measured to be at most maxLagBytes
+     * behind; an unknown lag (negative) keeps it out.
+     */
+    static boolean inRotation(boolean healthy, long lagBytes, boolean readYourWrites, long maxLagBytes) {
+        return healthy && (!readYourWrites || (lagBytes >= 0 && lagBytes <= maxLagBytes));
+    }
+
+    private static String infoField(String info, String field) {
+        String prefix = field + ":";
+        for (String line : info.split("\r\n")) {
+            if (line.startsWith(prefix)) {
+                return line.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+
+    private static Jedis closeQuietly(Jedis jedis) {
+        if (jedis != null) {
+            try {
+                jedis.close();
+            } catch (RuntimeException e) {
+                // already broken
+            }
+        }
+        return null;
+    }
+
+    private static class Replica {
+        private final HostAndPort node;
+        private final JedisPooled client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder failedReads = new LongAdder();
+        // checker thread only
+        private Jedis probe;
+        private volatile boolean healthy;
+        private volatile boolean inRotation;
+        private volatile long lagBytes = -1;
+
+        Replica(HostAndPort node) {
+            this.node = node;
+            this.client = new JedisPooled(node, RedisClient.getClientConfig(), RedisClient.getPoolConfig());
+        }
+
+        void check(long primaryOffset) {
+            try {
+                if (probe == null) {
+                    probe = new Jedis(node, RedisClient.getClientConfig());
+                }
+                String info = probe.info("replication");
+                if (!"up".equals(infoField(info, "master_link_status"))) {
+                    update(false, lagBytes, "replication link down");
+                    return;
+                }
+                String offset = infoField(info, "slave_repl_offset");
+                long lag = primaryOffset < 0 || offset == null
+                        ? -1
+                        : Math.max(0, primaryOffset - Long.parseLong(offset));
+                update(true, lag, lag < 0 ? "replication lag unknown" : "replication lag " + lag + " bytes");
+            } catch (RuntimeException e) {
+                probe = closeQuietly(probe);
+                update(false, lagBytes, e.getMessage());
+            }
+        }
+
+        synchronized void update(boolean healthy, long lagBytes, String reason) {
+            boolean inRotation = inRotation(healthy, lagBytes, Config.REDIS_READ_YOUR_WRITES,
+                    Config.REDIS_REPLICA_MAX_LAG_BYTES);
+            if (inRotation != this.inRotation) {
+                if (inRotation) {
+                    REPLICA_UP.log(node.toString());
+                } else {
+                    REPLICA_DOWN.log(node.toString(), reason);
+                }
+            }
+            this.healthy = healthy;
+            this.lagBytes = lagBytes;
+            this.inRotation = inRotation;
+        }
+    }
+}
@@ -1,27 +1,97 @@
-import beans.LiftRide;
-import beans.LiftRideMessage;
+import beans.BulkVerticalRequest;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
-
+import common.AsyncLog;
+import common.LiftRideBatch;
+import common.LiftRideCodec;
+import common.QueueTopology;
+import common.RedisClient;
+import common.RedisKeys;
+import common.SharedConfig;
+import common.beans.LiftRide;
+import common.beans.LiftRideMessage;
+import fastpath.LiftRideParser;
+import fastpath.PathTokenizer;
+import fastpath.Router;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.resps.Tuple;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-
-@WebServlet("/*")
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+@WebServlet(value = "/*", asyncSupported = true)
 public class Servlet extends HttpServlet {
+    private static final AsyncLog.Site REQUEST_LOG =
+            AsyncLog.site(Servlet.class, AsyncLog.Level.DEBUG, "{} {}");
+    private static final AsyncLog.Site ASYNC_RESPONSE_FAILED =
+            AsyncLog.site(Servlet.class, AsyncLog.Level.WARN, "Failed to write async POST response: {}");
+
     private Connection connection;
     private RMQChannelPool channelPool;
+    private ConfirmPublisher confirmPublisher;
+    private BatchingPublisher batchingPublisher;
     private Gson gson = new Gson();
-    private JedisPool jedisPool;
+    // gauges and optional self-tuning for RedisClient's pools
+    private RedisPoolMonitor redisPools;
+    // GET reads go to the read replicas when any are configured, null otherwise
+    private ReplicaRouter replicaRouter;
+    // near-caches for the GET endpoints, null when SharedConfig.NEAR_CACHE is off
+    private ReadCache readCache;
+
+    // per-thread scratch buffer for the binary wire format
+    private static final ThreadLocal<ByteBuffer> WIRE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(LiftRideCodec.ENCODED_SIZE));
+    private static final AMQP.BasicProperties MESSAGE_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType(Config.BINARY_WIRE_FORMAT ? LiftRideCodec.CONTENT_TYPE : "application/json")
+            .build();
+
+    /**
+     * A routed request; path variables are read from the tokenizer in path order.
+     */
+    @FunctionalInterface
+    private interface RouteHandler {
+        void handle(HttpServletRequest request, HttpServletResponse response, PathTokenizer path) throws IOException;
+    }
+
+    private final Router<RouteHandler> getRoutes = new Router<RouteHandler>()
+            .add("/skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}", this::processSkierDayVertical)
+            .add("/resorts/{resortID}/seasons/{seasonID}/days/{dayID}/skiers", this::processResortDayVertical)
+            .add("/resorts/{resortID}/seasons/{seasonID}/leaderboard", this::processLeaderboard)
+            .add("/skiers/{skierID}/vertical", this::processSkierTotalVertical)
+            .add("/skiers/vertical", (request, response, path) -> processBulkVerticalGet(request, response))
+            .add("/metrics", (request, response, path) -> processMetrics(response));
+
+    private final Router<RouteHandler> postRoutes = new Router<RouteHandler>()
+            .add("/skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}", this::processLiftRide)
+            .add("/skiers/vertical", (request, response, path) -> processBulkVerticalPost(request, response));
 
     /**
      * Initialize RabbitMQ
@@ -37,10 +107,34 @@ public class Servlet extends HttpServlet {
             factory.setUsername(Config.RABBITMQ_USERNAME);
             factory.setPassword(Config.RABBITMQ_PASSWORD);
             connection = factory.newConnection();
-            channelPool = new RMQChannelPool(Config.CHANNEL_POOL_SIZE, new RMQChannelFactory(connection));
+            QueueTopology.declare(connection);
+            channelPool = new RMQChannelPool(Config.CHANNEL_POOL_SIZE, Config.CHANNEL_POOL_MAX_SIZE,
+                    Config.CHANNEL_BORROW_TIMEOUT_MS, Config.CHANNEL_IDLE_TIMEOUT_MS,
+                    new RMQChannelFactory(connection));
+            if (Config.ASYNC_POST) {
+                confirmPublisher = new ConfirmPublisher(connection, Config.CONFIRM_CHANNEL_COUNT);
+            }
+            if (Config.BATCH_PUBLISH) {
+                BatchingPublisher.FramePublisher framePublisher = Config.ASYNC_POST
+                        ? (props, body) -> confirmPublisher.publish(
+                                QueueTopology.EXCHANGE, QueueTopology.ROUTING_KEY, props, body)
+                        : this::publishOnPooledChannel;
+                String batchContentType = Config.BINARY_WIRE_FORMAT
+                        ? LiftRideBatch.BINARY_CONTENT_TYPE
+                        : LiftRideBatch.JSON_CONTENT_TYPE;
+                batchingPublisher = new BatchingPublisher(framePublisher, batchContentType, Config.BATCH_SIZE,
+                        Config.BATCH_LINGER_MICROS, Config.BATCH_QUEUE_CAPACITY);
+            }
 
-            // Initialize Redis
-            jedisPool = new JedisPool(Config.REDIS_HOST, Config.REDIS_PORT); // Replace with Redis host and port
+            // Initialize Redis: every handler uses RedisClient's client and pools
+            redisPools = new RedisPoolMonitor();
+            if (RedisClient.isStandalone() && !Config.REDIS_READ_REPLICAS.isEmpty()) {
+                replicaRouter = new ReplicaRouter(Config.REDIS_READ_REPLICAS);
+                redisPools.register(replicaRouter::getPools);
+            }
+            if (SharedConfig.NEAR_CACHE) {
+                readCache = new ReadCache();
+            }
         } catch (Exception e) {
             throw new ServletException("Failed to initialize RabbitMQ or Redis", e);
         }
@@ -48,27 +142,197 @@ public class Servlet extends HttpServlet {
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        LiftRideMessage liftRideMessage = processPostRequest(request, response);
+        PathTokenizer path = route(request, response);
+        if (path == null) {
+            return;
+        }
+        RouteHandler handler = postRoutes.route(path);
+        if (handler == null) {
+            writeNoRoute(response);
+            return;
+        }
+        handler.handle(request, response, path);
+    }
+
+    /**
+     * Handle POST /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}
+     * Queue a lift ride for the consumer
+     */
+    private void processLiftRide(HttpServletRequest request, HttpServletResponse response, PathTokenizer path)
+            throws IOException {
+        LiftRideMessage liftRideMessage = processPostRequest(request, response, path);
 
         if (liftRideMessage == null) {
             return;
         }
 
+        if (Config.ASYNC_POST) {
+            publishAsync(request, liftRideMessage);
+            return;
+        }
+
+        if (Config.BATCH_PUBLISH) {
+            publishBatched(response, liftRideMessage);
+            return;
+        }
+
         try {
             Channel channel = channelPool.borrowObject();
-            channel.queueDeclare("assignment2_queue", false, false, false, null);
-            String message = gson.toJson(liftRideMessage);
-            channel.basicPublish("", "assignment2_queue", null, message.getBytes());
-
-            channelPool.returnObject(channel);
+            try {
+                byte[] message = serialize(liftRideMessage, false);
+                channel.basicPublish(QueueTopology.EXCHANGE, QueueTopology.ROUTING_KEY, MESSAGE_PROPERTIES, message);
+            } finally {
+                channelPool.returnObject(channel);
+            }
             response.setStatus(HttpServletResponse.SC_CREATED);
             response.getWriter().write("{\"message\": \"Lift ride data successfully processed\"}");
+        } catch (ChannelPoolTimeoutException e) {
+            writePoolExhausted(response);
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             response.getWriter().write("{\"message\": \"Failed to process lift ride data\"}");
         }
     }
 
+    /**
+     * Publish the lift ride with publisher confirms and release the request thread.
+     * The response is written from the confirm callback (201) or from the async timeout (503).
+     */
+    private void publishAsync(HttpServletRequest request, LiftRideMessage liftRideMessage) {
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(Config.PUBLISH_TIMEOUT_MS);
+        AtomicBoolean responded = new AtomicBoolean(false);
+        asyncContext.addListener(new PublishTimeoutListener(responded));
+
+        CompletableFuture<Void> published = Config.BATCH_PUBLISH
+                ? batchingPublisher.submit(serialize(liftRideMessage, true))
+                : confirmPublisher.publish(QueueTopology.EXCHANGE, QueueTopology.ROUTING_KEY,
+                        MESSAGE_PROPERTIES, serialize(liftRideMessage, false));
+        published.whenComplete((ignored, error) -> {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            try {
+                if (error == null) {
+                    response.setStatus(HttpServletResponse.SC_CREATED);
+                    response.getWriter().write("{\"message\": \"Lift ride data successfully processed\"}");
+                } else {
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    response.getWriter().write("{\"message\": \"Failed to process lift ride data\"}");
+                }
+            } catch (IOException e) {
+                ASYNC_RESPONSE_FAILED.log(e.getMessage());
+            } finally {
+                asyncContext.complete();
+            }
+        });
+    }
+
+    /**
+     * Hand the lift ride to the batching publisher and wait on the request thread until its batch is out.
+     */
+    private void publishBatched(HttpServletResponse response, LiftRideMessage liftRideMessage) throws IOException {
+        byte[] message = serialize(liftRideMessage, true);
+        try {
+            batchingPublisher.submit(message).get(Config.PUBLISH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            response.setStatus(HttpServletResponse.SC_CREATED);
+            response.getWriter().write("{\"message\": \"Lift ride data successfully processed\"}");
+        } catch (TimeoutException e) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.getWriter().write("{\"message\": \"Timed out waiting for batch publish\"}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.getWriter().write("{\"message\": \"Interrupted waiting for batch publish\"}");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ChannelPoolTimeoutException) {
+                writePoolExhausted(response);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.getWriter().write("{\"message\": \"Failed to process lift ride data\"}");
+        }
+    }
+
+    /**
+     * Serialize a lift ride in the configured wire format.
+     * The binary format is written into a per-thread buffer, so unless keep is set the result
+     * is only valid until this thread serializes again; that is enough for a basicPublish call.
+     */
+    private byte[] serialize(LiftRideMessage liftRideMessage, boolean keep) {
+        if (!Config.BINARY_WIRE_FORMAT) {
+            return gson.toJson(liftRideMessage).getBytes(StandardCharsets.UTF_8);
+        }
+        if (keep) {
+            return LiftRideCodec.encode(liftRideMessage);
+        }
+        ByteBuffer buffer = WIRE_BUFFER.get();
+        buffer.clear();
+        LiftRideCodec.encode(liftRideMessage, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Fast 503 for a request that could not get a channel within CHANNEL_BORROW_TIMEOUT_MS.
+     */
+    private void writePoolExhausted(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        response.getWriter().write("{\"message\": \"No RabbitMQ channel available, retry later\"}");
+    }
+
+    /**
+     * Publish one framed batch on a pooled channel; used by the batching publisher in synchronous mode.
+     */
+    private CompletableFuture<Void> publishOnPooledChannel(AMQP.BasicProperties props, byte[] body) {
+        try {
+            Channel channel = channelPool.borrowObject();
+            try {
+                channel.basicPublish(QueueTopology.EXCHANGE, QueueTopology.ROUTING_KEY, props, body);
+            } finally {
+                channelPool.returnObject(channel);
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Answers 503 when the broker has not confirmed a publish within PUBLISH_TIMEOUT_MS.
+     */
+    private static class PublishTimeoutListener implements AsyncListener {
+        private final AtomicBoolean responded;
+
+        PublishTimeoutListener(AtomicBoolean responded) {
+            this.responded = responded;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (responded.compareAndSet(false, true)) {
+                HttpServletResponse response = (HttpServletResponse) event.getAsyncContext().getResponse();
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.getWriter().write("{\"message\": \"Timed out waiting for broker confirm\"}");
+                event.getAsyncContext().complete();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            responded.set(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
     /**
      * Handle GET requests
      */
@@ -80,57 +344,55 @@ public class Servlet extends HttpServlet {
     @Override
     public void destroy() {
         try {
+            if (batchingPublisher != null) batchingPublisher.close();
+            if (confirmPublisher != null) confirmPublisher.close();
             if (channelPool != null) channelPool.close();
             if (connection != null) connection.close();
-            if (jedisPool != null) jedisPool.close();
+            if (readCache != null) readCache.close();
+            if (replicaRouter != null) replicaRouter.close();
+            if (redisPools != null) redisPools.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private LiftRideMessage processPostRequest(HttpServletRequest request, HttpServletResponse response)
-            throws IOException {
-
+    /**
+     * Check the request has a path and wrap it in a tokenizer for the router.
+     * Returns null after answering 404 if there is no path.
+     */
+    private PathTokenizer route(HttpServletRequest request, HttpServletResponse response) throws IOException {
         response.setContentType("application/json");
 
-        //1. Check request
         String urlPath = request.getPathInfo();
-        System.out.println("URL Path: " + urlPath);
+        REQUEST_LOG.log(request.getMethod(), urlPath);
 
-        //1.1 Check null or empty
         if (urlPath == null || urlPath.isEmpty()) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             response.getWriter().write("{\"message\": \"Missing parameters\"}");
             return null;
         }
+        return new PathTokenizer(urlPath);
+    }
 
-        //1.2 Validate URL format
-        String[] urlParts = urlPath.split("/");
-        if (!isPostUrlValid(urlParts)) {
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            response.getWriter().write("{\"message\": \"Invalid URL format\"}");
-            return null;
-        }
-
-        Integer resortID = Integer.parseInt(urlParts[2]);
-        Integer seasonID = Integer.parseInt(urlParts[4]);
-        Integer dayID = Integer.parseInt(urlParts[6]);
-        Integer skierID = Integer.parseInt(urlParts[8]);
-
-        try (BufferedReader reader = request.getReader()) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
+    private void writeNoRoute(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        response.getWriter().write("{\"message\": \"Invalid URL format\"}");
+    }
 
-            LiftRide liftRide = gson.fromJson(sb.toString(), LiftRide.class);
+    /**
+     * Read the lift ride from the body; the route has already parsed
+     * path values [resortID, seasonID, dayID, skierID].
+     */
+    private LiftRideMessage processPostRequest(HttpServletRequest request, HttpServletResponse response,
+                                               PathTokenizer path) throws IOException {
+        try (InputStream body = request.getInputStream()) {
+            LiftRide liftRide = LiftRideParser.parse(body);
             if (liftRide == null || liftRide.getTime() == null || liftRide.getLiftID() == null) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 response.getWriter().write("{\"message\": \"Invalid lift ride data\"}");
                 return null;
             }
-            return new LiftRideMessage(resortID, seasonID, dayID, skierID, liftRide);
+            return new LiftRideMessage(path.get(0), path.get(1), path.get(2), path.get(3), liftRide);
         } catch (JsonSyntaxException e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             response.getWriter().write("{\"message\": \"Malformed JSON: " + e.getMessage() + "\"}");
@@ -142,103 +404,75 @@ public class Servlet extends HttpServlet {
         }
     }
 
-
-    private boolean isPostUrlValid(String[] urlPath) {
-        // urlPath  = "skiers/12/seasons/2019/days/1/skiers/110"
-        // urlParts = [skiers, 12, seasons, 2019, days, 1, skiers, 110]
-        if (urlPath.length != 9) {
-            return false;
-        }
-
-        if (!urlPath[1].equals("skiers") ||
-                !urlPath[3].equals("seasons") ||
-                !urlPath[5].equals("days") ||
-                !urlPath[7].equals("skiers")) {
-            return false;
-        }
-
-        try {
-            Integer.parseInt(urlPath[2]); // resortID
-            Integer.parseInt(urlPath[4]); // seasonID
-            Integer.parseInt(urlPath[6]); // dayID
-            Integer.parseInt(urlPath[8]); // skierID
-        } catch (NumberFormatException e) {
-            return false;
-        }
-
-        return true;
-    }
-
     private void processGetRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-
-        //1. Check request
-        String urlPath = request.getPathInfo();
-        System.out.println("URL Path: " + urlPath);
-
-        //1.1 Check null or empty
-        if (urlPath == null || urlPath.isEmpty()) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            response.getWriter().write("{\"message\": \"Missing parameters\"}");
+        PathTokenizer path = route(request, response);
+        if (path == null) {
+            return;
+        }
+        RouteHandler handler = getRoutes.route(path);
+        if (handler == null) {
+            writeNoRoute(response);
             return;
         }
-
-        //1.2 Validate URL format
-        String[] urlParts = urlPath.split("/");
         try {
-            if (urlParts.length == 9) {
-                // Handle GET /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}
-                processSkierDayVertical(request, response, urlParts);
-            } else if (urlParts.length == 8) {
-                //Handle GET /resorts/{resortID}/seasons/{seasonID}/day/{dayID}/skiers
-                processResortDayVertical(request, response, urlParts);
-            } else if (urlParts.length == 4) {
-                // Handle GET /skiers/{skierID}/vertical
-                processSkierTotalVertical(request, response, urlParts);
-            } else {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid URL length\"}");
-            }
+            handler.handle(request, response, path);
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             response.getWriter().write("{\"message\": \"Failed to process request\"}");
         }
+    }
 
+    /**
+     * Handle GET /metrics
+     * Report internal gauges used to size the server's pools
+     */
+    private void processMetrics(HttpServletResponse response) throws IOException {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("channelPool", channelPool.getMetrics());
+        metrics.put("redisPools", redisPools.getMetrics());
+        if (readCache != null) {
+            metrics.put("nearCache", readCache.getMetrics());
+        }
+        if (replicaRouter != null) {
+            metrics.put("readReplicas", replicaRouter.getMetrics());
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().write(gson.toJson(metrics));
     }
 
     /**
-     * Handle GET /resorts/{resortID}/seasons/{seasonID}/day/{dayID}/skiers
+     * Handle GET /resorts/{resortID}/seasons/{seasonID}/days/{dayID}/skiers
      * Get number of unique skiers at resort/season/day
+     * Optional ?mode=exact|approx picks SCARD on the SET or PFCOUNT on the HyperLogLog
+     * (default from Config.UNIQUE_SKIERS_APPROX)
      */
-    private void processResortDayVertical(HttpServletRequest request, HttpServletResponse response, String[] urlParts) throws IOException {
+    private void processResortDayVertical(HttpServletRequest request, HttpServletResponse response, PathTokenizer path) throws IOException {
         try {
-            //Validation
-            if (!urlParts[1].equals("resorts") || !urlParts[3].equals("seasons") || !urlParts[5].equals("days") || !urlParts[7].equals("skiers")) {
+            String mode = request.getParameter("mode");
+            if (mode != null && !mode.equals("exact") && !mode.equals("approx")) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid URL format\"}");
+                response.getWriter().write("{\"message\": \"Invalid mode: must be 'exact' or 'approx'\"}");
                 return;
             }
+            boolean approx = mode == null ? Config.UNIQUE_SKIERS_APPROX : mode.equals("approx");
 
-            try (Jedis jedis = jedisPool.getResource()) {
-                int resortID = Integer.parseInt(urlParts[2]);
-                int seasonID = Integer.parseInt(urlParts[4]);
-                int dayID = Integer.parseInt(urlParts[6]);
+            int resortID = path.get(0);
+            int seasonID = path.get(1);
+            int dayID = path.get(2);
 
-                String key = "resort:" + resortID + ":season:" + seasonID + ":day:" + dayID + ":skiers";
-                System.out.println("key:" + key);
-                long uniqueSkiersCount = jedis.scard(key);
+            long uniqueSkiersCount = readCache == null
+                    ? loadUniqueSkiers(resortID, seasonID, dayID, approx)
+                    : readCache.getUniqueSkiers().get(ReadCache.uniqueSkiersKey(resortID, seasonID, dayID, approx),
+                            () -> loadUniqueSkiers(resortID, seasonID, dayID, approx));
 
-                if (uniqueSkiersCount > 0) {
-                    response.setStatus(HttpServletResponse.SC_OK);
-                    response.setContentType("application/json");
-                    response.getWriter().write("{\"uniqueSkiers\": " + uniqueSkiersCount + "}");
-                } else {
-                    response.setStatus(HttpServletResponse.SC_OK);
-                    response.getWriter().write("Data not found");
-                }
-            } catch (NumberFormatException e) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid URL numeric\"}");
+            if (uniqueSkiersCount > 0) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().write(approx
+                        ? "{\"uniqueSkiers\": " + uniqueSkiersCount + ", \"approximate\": true}"
+                        : "{\"uniqueSkiers\": " + uniqueSkiersCount + "}");
+            } else {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().write("Data not found");
             }
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -250,36 +484,25 @@ public class Servlet extends HttpServlet {
      * Handle GET /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}
      * Get ski day vertical for a skier
      */
-    private void processSkierDayVertical(HttpServletRequest request, HttpServletResponse response, String[] urlParts)
+    private void processSkierDayVertical(HttpServletRequest request, HttpServletResponse response, PathTokenizer path)
             throws IOException {
         try {
-            if (!urlParts[1].equals("skiers") || !urlParts[3].equals("seasons") || !urlParts[5].equals("days") || !urlParts[7].equals("skiers")) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid URL format\"}");
-                return;
-            }
-
-            try (Jedis jedis = jedisPool.getResource()) {
-                int resortID = Integer.parseInt(urlParts[2]);
-                int seasonID = Integer.parseInt(urlParts[4]);
-                int dayID = Integer.parseInt(urlParts[6]);
-                int skierID = Integer.parseInt(urlParts[8]);
+            int resortID = path.get(0);
+            int seasonID = path.get(1);
+            int dayID = path.get(2);
+            int skierID = path.get(3);
 
-                String key = "resort:" + resortID + ":season:" + seasonID + ":day:" + dayID + ":skier:" + skierID;
-                System.out.println("key:" + key);
-                String dayVertical = jedis.hget(key, "vertical");
-
-                if (dayVertical != null) {
-                    response.setStatus(HttpServletResponse.SC_OK);
-                    response.getWriter().write(dayVertical);
-                } else {
-                    response.setStatus(HttpServletResponse.SC_OK);
-                    response.getWriter().write("Data not found");
-                }
+            String dayVertical = readCache == null
+                    ? loadSkierDayVertical(resortID, seasonID, dayID, skierID)
+                    : readCache.getSkierDayVertical().get(ReadCache.skierDayKey(resortID, seasonID, dayID, skierID),
+                            () -> loadSkierDayVertical(resortID, seasonID, dayID, skierID));
 
-            } catch (NumberFormatException e) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid URL numeric\"}");
+            if (dayVertical != null) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().write(dayVertical);
+            } else {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().write("Data not found");
             }
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -291,23 +514,10 @@ public class Servlet extends HttpServlet {
      * Handle GET /skiers/{skierID}/vertical
      * Get the total vertical for the skier for specified seasons at the specified resort
      */
-    private void processSkierTotalVertical(HttpServletRequest request, HttpServletResponse response, String[] urlParts)
+    private void processSkierTotalVertical(HttpServletRequest request, HttpServletResponse response, PathTokenizer path)
             throws IOException {
         try {
-            if (!urlParts[1].equals("skiers") || !urlParts[3].equals("vertical")) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid URL format\"}");
-                return;
-            }
-
-            int skierID;
-            try {
-                skierID = Integer.parseInt(urlParts[2]);
-            } catch (NumberFormatException e) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                response.getWriter().write("{\"message\": \"Invalid skierID: must be a valid integer\"}");
-                return;
-            }
+            int skierID = path.get(0);
 
             String resort = request.getParameter("resort"); // Required
             String season = request.getParameter("season"); // Optional
@@ -318,20 +528,27 @@ public class Servlet extends HttpServlet {
                 return;
             }
 
+            int resortID;
+            try {
+                resortID = Integer.parseInt(resort);
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("{\"message\": \"Invalid resort: must be a valid integer\"}");
+                return;
+            }
+
             if (season != null && !season.matches("\\d{4}")) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 response.getWriter().write("{\"message\": \"Invalid season format: must be a 4-digit year\"}");
                 return;
             }
 
-            String totalVerticalKey = "resort:" + resort + ":skier:" + skierID + ":vertical";
-            System.out.println("key:" + totalVerticalKey);
-            String totalVertical;
-            try (Jedis jedis = RedisClient.getPool().getResource()) {
-                totalVertical = (season == null)
-                        ? jedis.hget(totalVerticalKey, "all")
-                        : jedis.hget(totalVerticalKey, season);
-            }
+            int seasonID = season == null ? -1 : Integer.parseInt(season);
+            String totalVertical = readCache == null
+                    ? loadTotalVertical(resortID, skierID, seasonID)
+                    : readCache.getTotalVertical().get(ReadCache.totalVerticalKey(resortID, skierID,
+                                    season == null ? "all" : String.valueOf(seasonID)),
+                            () -> loadTotalVertical(resortID, skierID, seasonID));
 
             if (totalVertical == null) {
                 response.setStatus(HttpServletResponse.SC_OK);
@@ -348,6 +565,203 @@ public class Servlet extends HttpServlet {
             response.getWriter().write("{\"message\": \"Server error occurred: " + e.getMessage() + "\"}");
         }
     }
-}
 
+    /**
+     * Handle GET /resorts/{resortID}/seasons/{seasonID}/leaderboard?top=N
+     * Get the top N skiers by season vertical, highest first, from the sorted set the Consumer maintains
+     */
+    private void processLeaderboard(HttpServletRequest request, HttpServletResponse response, PathTokenizer path)
+            throws IOException {
+        int resortID = path.get(0);
+        int seasonID = path.get(1);
+        int top;
+        try {
+            String topParam = request.getParameter("top"); // Optional
+            top = topParam == null ? Config.LEADERBOARD_DEFAULT_TOP : Integer.parseInt(topParam);
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid top: must be a valid integer\"}");
+            return;
+        }
+        if (top < 1 || top > Config.LEADERBOARD_MAX_TOP) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid top: must be between 1 and "
+                    + Config.LEADERBOARD_MAX_TOP + "\"}");
+            return;
+        }
+
+        List<Tuple> leaders = read(
+                client -> client.zrevrangeWithScores(RedisKeys.leaderboard(resortID, seasonID), 0, top - 1));
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        PrintWriter writer = response.getWriter();
+        writer.write('[');
+        for (int i = 0; i < leaders.size(); i++) {
+            Tuple leader = leaders.get(i);
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write("{\"skierID\": ");
+            writer.write(leader.getElement());
+            writer.write(", \"vertical\": ");
+            writer.print((long) leader.getScore());
+            writer.write('}');
+        }
+        writer.write(']');
+    }
 
+    /**
+     * Handle GET /skiers/vertical?resort={resortID}&season={seasonID}&skierIDs=1,2,3
+     * Get the total vertical of many skiers at once, see writeBulkVertical
+     */
+    private void processBulkVerticalGet(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String skierIDsParam = request.getParameter("skierIDs"); // Required, comma separated
+        List<Integer> skierIDs = new ArrayList<>();
+        if (skierIDsParam != null) {
+            try {
+                int start = 0;
+                while (start <= skierIDsParam.length()) {
+                    int end = skierIDsParam.indexOf(',', start);
+                    if (end < 0) {
+                        end = skierIDsParam.length();
+                    }
+                    skierIDs.add(Integer.parseInt(skierIDsParam, start, end, 10));
+                    start = end + 1;
+                }
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("{\"message\": \"Invalid skierIDs: must be comma separated integers\"}");
+                return;
+            }
+        }
+        writeBulkVertical(response, request.getParameter("resort"), request.getParameter("season"), skierIDs);
+    }
+
+    /**
+     * Handle POST /skiers/vertical with body {"resort": "1", "season": "2024", "skierIDs": [1, 2, 3]}
+     * Same as the GET form, for skier lists too long for a query string
+     */
+    private void processBulkVerticalPost(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        BulkVerticalRequest bulkRequest;
+        try (InputStreamReader body = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            bulkRequest = gson.fromJson(body, BulkVerticalRequest.class);
+        } catch (JsonSyntaxException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Malformed JSON: " + e.getMessage() + "\"}");
+            return;
+        }
+        if (bulkRequest == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Missing request body\"}");
+            return;
+        }
+        List<Integer> skierIDs = bulkRequest.getSkierIDs() == null ? new ArrayList<>() : bulkRequest.getSkierIDs();
+        if (skierIDs.contains(null)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid skierIDs: must be integers\"}");
+            return;
+        }
+        writeBulkVertical(response, bulkRequest.getResort(), bulkRequest.getSeason(), skierIDs);
+    }
+
+    /**
+     * Look up the total vertical of every skier with one pipelined HGET batch (a single Redis round-trip)
+     * and stream back [{"skierID": 1, "totalVert": 1230}, {"skierID": 2, "totalVert": null}, ...]
+     * in request order. The season's total is read if a season is given, the all-time total otherwise.
+     */
+    private void writeBulkVertical(HttpServletResponse response, String resort, String season, List<Integer> skierIDs)
+            throws IOException {
+        response.setContentType("application/json");
+
+        if (resort == null || resort.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid input: 'resort' is required\"}");
+            return;
+        }
+        int resortID;
+        try {
+            resortID = Integer.parseInt(resort);
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid resort: must be a valid integer\"}");
+            return;
+        }
+        if (season != null && !season.matches("\\d{4}")) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid season format: must be a 4-digit year\"}");
+            return;
+        }
+        if (skierIDs.isEmpty() || skierIDs.size() > Config.BULK_VERTICAL_MAX_SKIERS) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid input: between 1 and "
+                    + Config.BULK_VERTICAL_MAX_SKIERS + " skierIDs are required\"}");
+            return;
+        }
+
+        byte[] field = season == null ? RedisKeys.ALL_FIELD : RedisKeys.number(Integer.parseInt(season));
+        List<Response<byte[]>> verticals;
+        try {
+            verticals = read(client -> {
+                List<Response<byte[]>> responses = new ArrayList<>(skierIDs.size());
+                try (AbstractPipeline pipeline = client.pipelined()) {
+                    for (int skierID : skierIDs) {
+                        responses.add(pipeline.hget(RedisKeys.skierVertical(resortID, skierID), field));
+                    }
+                    pipeline.sync();
+                }
+                return responses;
+            });
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.getWriter().write("{\"message\": \"Server error occurred: " + e.getMessage() + "\"}");
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        PrintWriter writer = response.getWriter();
+        writer.write('[');
+        for (int i = 0; i < skierIDs.size(); i++) {
+            byte[] vertical = verticals.get(i).get();
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write("{\"skierID\": ");
+            writer.print(skierIDs.get(i).intValue());
+            writer.write(", \"totalVert\": ");
+            writer.write(vertical == null ? "null" : new String(vertical, StandardCharsets.US_ASCII));
+            writer.write('}');
+        }
+        writer.write(']');
+    }
+
+    private Long loadUniqueSkiers(int resortID, int seasonID, int dayID, boolean approx) {
+        return read(client -> approx
+                ? client.pfcount(RedisKeys.daySkiersHll(resortID, seasonID, dayID))
+                : client.scard(RedisKeys.daySkiers(resortID, seasonID, dayID)));
+    }
+
+    private String loadSkierDayVertical(int resortID, int seasonID, int dayID, int skierID) {
+        byte[] dayVertical = read(client -> client.hget(RedisKeys.skierDay(resortID, seasonID, dayID, skierID),
+                RedisKeys.VERTICAL_FIELD));
+        return dayVertical == null ? null : new String(dayVertical, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * seasonID -1 reads the all-time total
+     */
+    private String loadTotalVertical(int resortID, int skierID, int seasonID) {
+        byte[] field = seasonID < 0 ? RedisKeys.ALL_FIELD : RedisKeys.number(seasonID);
+        byte[] totalVertical = read(client -> client.hget(RedisKeys.skierVertical(resortID, skierID), field));
+        return totalVertical == null ? null : new String(totalVertical, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Run a GET's Redis read on a read replica if any are configured, otherwise on RedisClient's client.
+     */
+    private <T> T read(Function<UnifiedJedis, T> read) {
+        UnifiedJedis primary = RedisClient.getClient();
+        return replicaRouter == null ? read.apply(primary) : replicaRouter.read(primary, read);
+    }
+}
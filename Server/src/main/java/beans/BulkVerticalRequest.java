@@ -1,13 +1,18 @@
+package beans;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.util.List;
+
 @Data
 @ToString
 @AllArgsConstructor
 @NoArgsConstructor
-public class LiftRide {
-    private Integer time;
-    private Integer liftID;
+public class BulkVerticalRequest {
+    private String resort;
+    private String season;
+    private List<Integer> skierIDs;
 }
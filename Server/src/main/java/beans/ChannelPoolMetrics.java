@@ -0,0 +1,22 @@
+package beans;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChannelPoolMetrics {
+    private int size;
+    private int maxSize;
+    private long borrows;
+    private long waitedBorrows;
+    private long timeouts;
+    private long meanWaitMicros;
+    private long maxWaitMicros;
+    private long replacedChannels;
+    private long idleClosedChannels;
+}
@@ -0,0 +1,22 @@
+package beans;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class RedisPoolMetrics {
+    private String node;
+    private int maxTotal;
+    private int active;
+    private int idle;
+    private int waiters;
+    private long borrows;
+    // rolling mean over the pool's recent borrows, and the worst borrow since startup
+    private long meanBorrowWaitMicros;
+    private long maxBorrowWaitMicros;
+}
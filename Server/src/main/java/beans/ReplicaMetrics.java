@@ -0,0 +1,21 @@
+package beans;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplicaMetrics {
+    private String node;
+    private boolean healthy;
+    // healthy and, with read-your-writes on, within the lag limit
+    private boolean inRotation;
+    private long lagBytes;
+    private int outstanding;
+    private long reads;
+    private long failedReads;
+}
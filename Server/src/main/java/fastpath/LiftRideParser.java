@@ -0,0 +1,303 @@
+package fastpath;
+
+import com.google.gson.Gson;
+import common.beans.LiftRide;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming parser for the POST body {"time": 217, "liftID": 21}.
+ *
+ * The body is read straight from the request InputStream into a per-thread buffer and scanned
+ * in place by a per-thread scanner, so the hot path allocates nothing but the resulting LiftRide.
+ * Integer values may be bare or quoted, and unknown fields are skipped if their value is a valid
+ * JSON number, plain string, boolean or null. Anything else the scanner meets (nested values,
+ * floats in the known fields, escapes, invalid literals) falls back to Gson on the same bytes, so
+ * the accepted input and the JsonSyntaxException on malformed JSON stay the same as before.
+ */
+public class LiftRideParser {
+
+    // larger bodies are not lift rides; fail instead of growing the buffer without bound
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final byte[] TIME = "time".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LIFT_ID = "liftID".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+    private static final ThreadLocal<Scanner> SCANNER = ThreadLocal.withInitial(Scanner::new);
+    private static final Gson gson = new Gson();
+
+    private LiftRideParser() {
+    }
+
+    /**
+     * Parse a lift ride body. Returns null for an empty body, like Gson does.
+     *
+     * @throws com.google.gson.JsonSyntaxException if the body is not valid JSON
+     * @throws IOException if the body cannot be read or is too large
+     */
+    public static LiftRide parse(InputStream in) throws IOException {
+        byte[] buf = BUFFER.get();
+        int len = 0;
+        int n;
+        while ((n = in.read(buf, len, buf.length - len)) != -1) {
+            len += n;
+            if (len == buf.length) {
+                if (buf.length >= MAX_BODY_BYTES) {
+                    // a full buffer at the limit is fine as long as nothing follows it
+                    if (in.read() == -1) {
+                        break;
+                    }
+                    throw new IOException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+                }
+                byte[] bigger = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, bigger, 0, len);
+                buf = bigger;
+                BUFFER.set(buf);
+            }
+        }
+        return parse(buf, len);
+    }
+
+    public static LiftRide parse(byte[] buf, int len) {
+        Scanner scanner = SCANNER.get();
+        if (scanner.scan(buf, len)) {
+            return scanner.empty ? null : new LiftRide(scanner.time, scanner.liftID);
+        }
+        return gson.fromJson(new String(buf, 0, len, StandardCharsets.UTF_8), LiftRide.class);
+    }
+
+    /**
+     * Single pass over the body. scan() returns false as soon as it meets input it does not handle.
+     * One per thread, reset by every scan.
+     */
+    private static final class Scanner {
+        private byte[] buf;
+        private int len;
+        private int pos;
+        private boolean empty;
+        private Integer time;
+        private Integer liftID;
+        // last value read by scanInt, null for a JSON null
+        private Integer value;
+
+        boolean scan(byte[] buf, int len) {
+            this.buf = buf;
+            this.len = len;
+            pos = 0;
+            empty = false;
+            time = null;
+            liftID = null;
+            try {
+                return scanObject();
+            } finally {
+                // do not keep the caller's array reachable from the thread
+                this.buf = null;
+            }
+        }
+
+        private boolean scanObject() {
+            skipWhitespace();
+            if (pos == len) {
+                empty = true;
+                return true;
+            }
+            if (buf[pos++] != '{') {
+                return false;
+            }
+            skipWhitespace();
+            if (pos < len && buf[pos] == '}') {
+                pos++;
+                return trailingWhitespaceOnly();
+            }
+            while (true) {
+                skipWhitespace();
+                if (pos == len || buf[pos] != '"') {
+                    return false;
+                }
+                int keyStart = ++pos;
+                while (pos < len && buf[pos] != '"') {
+                    if (buf[pos] == '\\') {
+                        return false;
+                    }
+                    pos++;
+                }
+                if (pos == len) {
+                    return false;
+                }
+                int keyEnd = pos++;
+                skipWhitespace();
+                if (pos == len || buf[pos++] != ':') {
+                    return false;
+                }
+                skipWhitespace();
+                if (keyEquals(keyStart, keyEnd, TIME)) {
+                    if (!scanInt()) {
+                        return false;
+                    }
+                    time = value;
+                } else if (keyEquals(keyStart, keyEnd, LIFT_ID)) {
+                    if (!scanInt()) {
+                        return false;
+                    }
+                    liftID = value;
+                } else if (!skipScalar()) {
+                    return false;
+                }
+                skipWhitespace();
+                if (pos == len) {
+                    return false;
+                }
+                byte b = buf[pos++];
+                if (b == '}') {
+                    return trailingWhitespaceOnly();
+                }
+                if (b != ',') {
+                    return false;
+                }
+            }
+        }
+
+        private boolean scanInt() {
+            if (matches("null")) {
+                value = null;
+                return true;
+            }
+            boolean quoted = pos < len && buf[pos] == '"';
+            if (quoted) {
+                pos++;
+            }
+            boolean negative = pos < len && buf[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            int start = pos;
+            long result = 0;
+            while (pos < len && buf[pos] >= '0' && buf[pos] <= '9') {
+                result = result * 10 + (buf[pos++] - '0');
+                if (result > (long) Integer.MAX_VALUE + 1) {
+                    return false;
+                }
+            }
+            if (pos == start) {
+                return false;
+            }
+            if (quoted) {
+                if (pos == len || buf[pos] != '"') {
+                    return false;
+                }
+                pos++;
+            } else if (pos < len && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E')) {
+                return false;
+            }
+            result = negative ? -result : result;
+            if (result > Integer.MAX_VALUE) {
+                return false;
+            }
+            value = (int) result;
+            return true;
+        }
+
+        /**
+         * Skip a number, plain string, boolean or null; nested values and anything that is not valid JSON
+         * are left to Gson.
+         */
+        private boolean skipScalar() {
+            if (pos == len) {
+                return false;
+            }
+            byte b = buf[pos];
+            if (b == '"') {
+                pos++;
+                while (pos < len && buf[pos] != '"') {
+                    if (buf[pos] == '\\') {
+                        return false;
+                    }
+                    pos++;
+                }
+                if (pos == len) {
+                    return false;
+                }
+                pos++;
+                return true;
+            }
+            if (matches("true") || matches("false") || matches("null")) {
+                return true;
+            }
+            return skipNumber();
+        }
+
+        /**
+         * Skip a JSON number: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+         */
+        private boolean skipNumber() {
+            if (pos < len && buf[pos] == '-') {
+                pos++;
+            }
+            if (pos < len && buf[pos] == '0') {
+                pos++;
+            } else if (!skipDigits()) {
+                return false;
+            }
+            if (pos < len && buf[pos] == '.') {
+                pos++;
+                if (!skipDigits()) {
+                    return false;
+                }
+            }
+            if (pos < len && (buf[pos] == 'e' || buf[pos] == 'E')) {
+                pos++;
+                if (pos < len && (buf[pos] == '+' || buf[pos] == '-')) {
+                    pos++;
+                }
+                return skipDigits();
+            }
+            return true;
+        }
+
+        private boolean skipDigits() {
+            int start = pos;
+            while (pos < len && buf[pos] >= '0' && buf[pos] <= '9') {
+                pos++;
+            }
+            return pos > start;
+        }
+
+        private boolean matches(String literal) {
+            int end = pos + literal.length();
+            if (end > len) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (buf[pos + i] != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            pos = end;
+            return true;
+        }
+
+        private boolean keyEquals(int start, int end, byte[] key) {
+            if (end - start != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (buf[start + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while (pos < len && (buf[pos] == ' ' || buf[pos] == '\n' || buf[pos] == '\r' || buf[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        private boolean trailingWhitespaceOnly() {
+            skipWhitespace();
+            return pos == len;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fastpath;
+
+/**
+ * Hand-rolled tokenizer for servlet path info such as /skiers/12/seasons/2019/days/1/skiers/110.
+ *
+ * Segments are matched in place against the expected literals and numeric segments are parsed
+ * straight into primitive ints, with no split() and no intermediate strings. Numbers follow
+ * Integer.parseInt rules (optional sign, no overflow). A single trailing slash is accepted,
+ * as it was with split("/").
+ */
+public class PathTokenizer {
+
+    private final String path;
+    private int pos;
+    private int count;
+    private int value0;
+    private int value1;
+    private int value2;
+    private int value3;
+
+    public PathTokenizer(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Consume "/literal" or return false.
+     */
+    public boolean literal(String literal) {
+        int end = pos + 1 + literal.length();
+        if (end > path.length() || path.charAt(pos) != '/' || !path.startsWith(literal, pos + 1)
+                || (end < path.length() && path.charAt(end) != '/')) {
+            return false;
+        }
+        pos = end;
+        return true;
+    }
+
+    /**
+     * Consume "/number" and store it as the next value, or return false.
+     * Up to four values are kept, read back with get(index).
+     */
+    public boolean number() {
+        if (pos >= path.length() || path.charAt(pos) != '/' || count == 4) {
+            return false;
+        }
+        int i = pos + 1;
+        boolean negative = false;
+        if (i < path.length() && (path.charAt(i) == '-' || path.charAt(i) == '+')) {
+            negative = path.charAt(i) == '-';
+            i++;
+        }
+        int start = i;
+        long result = 0;
+        while (i < path.length() && path.charAt(i) != '/') {
+            char c = path.charAt(i++);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            result = result * 10 + (c - '0');
+            if (result > (long) Integer.MAX_VALUE + 1) {
+                return false;
+            }
+        }
+        if (i == start) {
+            return false;
+        }
+        result = negative ? -result : result;
+        if (result > Integer.MAX_VALUE) {
+            return false;
+        }
+        store((int) result);
+        pos = i;
+        return true;
+    }
+
+    /**
+     * True if the whole path has been consumed (allowing one trailing slash).
+     */
+    public boolean atEnd() {
+        return pos == path.length() || (pos == path.length() - 1 && path.charAt(pos) == '/');
+    }
+
+    public int get(int index) {
+        switch (index) {
+            case 0: return value0;
+            case 1: return value1;
+            case 2: return value2;
+            case 3: return value3;
+            default: throw new IndexOutOfBoundsException("Path value " + index);
+        }
+    }
+
+    private void store(int value) {
+        switch (count++) {
+            case 0: value0 = value; break;
+            case 1: value1 = value; break;
+            case 2: value2 = value; break;
+            default: value3 = value; break;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package fastpath;
+
+import java.util.Arrays;
+
+/**
+ * Route table compiled into a trie of path segments.
+ *
+ * Patterns are registered once, e.g. "/skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}";
+ * every "{name}" segment is an int variable. A lookup walks the trie with a PathTokenizer, so literals
+ * are matched in place and variables are parsed straight into the tokenizer's int values (read back
+ * with get(index), in path order). Nothing is split or copied, and the cost is one pass over the path.
+ *
+ * At each segment the literal children are tried before the variable child; routes never need to
+ * backtrack because a literal segment can not also parse as a number.
+ */
+public class Router<H> {
+
+    private final Node<H> root = new Node<>();
+
+    /**
+     * Register a handler for a pattern. Returns this router for chaining.
+     */
+    public Router<H> add(String pattern, H handler) {
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route must start with '/': " + pattern);
+        }
+        Node<H> node = root;
+        for (String segment : pattern.substring(1).split("/")) {
+            node = segment.startsWith("{") && segment.endsWith("}")
+                    ? node.numberChild()
+                    : node.literalChild(segment);
+        }
+        if (node.handler != null) {
+            throw new IllegalArgumentException("Duplicate route: " + pattern);
+        }
+        node.handler = handler;
+        return this;
+    }
+
+    /**
+     * Find the handler for the tokenizer's path, or null if no route matches.
+     * On a match the path variables are available from path.get(index).
+     */
+    public H route(PathTokenizer path) {
+        Node<H> node = root;
+        while (!path.atEnd()) {
+            Node<H> next = null;
+            for (int i = 0; i < node.literals.length; i++) {
+                if (path.literal(node.literals[i])) {
+                    next = node.literalChildren[i];
+                    break;
+                }
+            }
+            if (next == null) {
+                if (node.number == null || !path.number()) {
+                    return null;
+                }
+                next = node.number;
+            }
+            node = next;
+        }
+        return node.handler;
+    }
+
+    private static class Node<H> {
+        private String[] literals = new String[0];
+        private Node<H>[] literalChildren = newNodes(0);
+        private Node<H> number;
+        private H handler;
+
+        Node<H> literalChild(String literal) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(literal)) {
+                    return literalChildren[i];
+                }
+            }
+            Node<H> child = new Node<>();
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = literal;
+            literalChildren[literalChildren.length - 1] = child;
+            return child;
+        }
+
+        Node<H> numberChild() {
+            if (number == null) {
+                number = new Node<>();
+            }
+            return number;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <H> Node<H>[] newNodes(int size) {
+            return (Node<H>[]) new Node<?>[size];
+        }
+    }
+}
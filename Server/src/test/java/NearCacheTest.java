@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NearCacheTest {
+
+    // Integer keys below 2^16 hash to themselves: the low 4 bits pick the segment, the next 6 the stripe
+    private final NearCache<Integer, String> cache = new NearCache<>(1_000, 60_000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void cachesLoadsAndNulls() {
+        assertEquals("1", load(1));
+        assertEquals("1", load(1));
+        assertNull(cache.get(2, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get(2, () -> "loaded again"));
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getMetrics().getHits());
+    }
+
+    @Test
+    void invalidationDropsTheEntry() {
+        load(1);
+        cache.invalidate(1);
+        load(1);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void aLoadOverlappingItsKeysInvalidationIsNotCached() {
+        assertEquals("0", cache.get(0, () -> {
+            cache.invalidate(0);
+            return "0";
+        }));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void aLoadOverlappingAnotherKeysInvalidationIsCached() {
+        // 0 and 16 share a segment but not a version stripe
+        cache.get(0, () -> {
+            cache.invalidate(16);
+            return "0";
+        });
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void keysSharingAStripeAreConservative() {
+        // 0 and 1024 share a segment and a stripe: the load is dropped, never left stale
+        cache.get(0, () -> {
+            cache.invalidate(1024);
+            return "0";
+        });
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidateAllStopsEveryInFlightLoad() {
+        cache.get(0, () -> {
+            cache.invalidateAll();
+            return "0";
+        });
+        load(1);
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void reloadsAnEntryAfterItsTtl() throws InterruptedException {
+        NearCache<Integer, String> shortLived = new NearCache<>(1_000, 1);
+        shortLived.get(1, () -> "first");
+        Thread.sleep(5);
+        assertEquals("second", shortLived.get(1, () -> "second"));
+        assertEquals(0, shortLived.getMetrics().getHits());
+        assertEquals(2, shortLived.getMetrics().getMisses());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryOfAFullSegment() {
+        // 32 entries over 16 segments: two per segment; 0, 16 and 32 all map to segment 0
+        NearCache<Integer, String> small = new NearCache<>(32, 60_000);
+        small.get(0, () -> "0");
+        small.get(16, () -> "16");
+        // touch 0 so that 16 is the least recently used
+        assertEquals("0", small.get(0, () -> "reloaded"));
+        small.get(32, () -> "32");
+        assertEquals(2, small.size());
+
+        assertEquals("0", small.get(0, () -> "reloaded"));
+        assertEquals("32", small.get(32, () -> "reloaded"));
+        assertEquals("reloaded", small.get(16, () -> "reloaded"));
+    }
+
+    private String load(int key) {
+        return cache.get(key, () -> {
+            loads.incrementAndGet();
+            return String.valueOf(key);
+        });
+    }
+}
@@ -0,0 +1,120 @@
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RMQChannelPoolTest {
+
+    private final AtomicInteger openChannels = new AtomicInteger();
+    private final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("createChannel")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                openChannels.incrementAndGet();
+                return newChannel();
+            });
+    private RMQChannelPool pool;
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void growsToMaxSizeThenTimesOut() throws Exception {
+        pool = new RMQChannelPool(1, 3, 5, 0, new RMQChannelFactory(connection));
+        List<Channel> borrowed = borrow(3);
+        assertEquals(3, pool.getMetrics().getSize());
+        assertThrows(ChannelPoolTimeoutException.class, () -> pool.borrowObject());
+        assertEquals(1, pool.getMetrics().getTimeouts());
+        borrowed.forEach(pool::returnObject);
+    }
+
+    @Test
+    void reusesAReturnedChannel() throws Exception {
+        pool = new RMQChannelPool(1, 3, 5, 0, new RMQChannelFactory(connection));
+        Channel channel = pool.borrowObject();
+        pool.returnObject(channel);
+        assertSame(channel, pool.borrowObject());
+        assertEquals(1, openChannels.get());
+    }
+
+    @Test
+    void replacesAClosedChannel() throws Exception {
+        pool = new RMQChannelPool(1, 3, 5, 0, new RMQChannelFactory(connection));
+        Channel channel = pool.borrowObject();
+        channel.close();
+        pool.returnObject(channel);
+        assertEquals(0, pool.getMetrics().getSize());
+        assertNotSame(channel, pool.borrowObject());
+        assertEquals(1, pool.getMetrics().getReplacedChannels());
+    }
+
+    @Test
+    void closesIdleChannelsDownToCoreSize() throws Exception {
+        pool = new RMQChannelPool(2, 6, 5, 1, new RMQChannelFactory(connection));
+        borrow(6).forEach(pool::returnObject);
+        assertEquals(6, openChannels.get());
+
+        Thread.sleep(5);
+        pool.reapIdle();
+        assertEquals(2, pool.getMetrics().getSize());
+        assertEquals(4, pool.getMetrics().getIdleClosedChannels());
+        assertEquals(2, openChannels.get());
+
+        // the survivors are still handed out
+        assertEquals(2, borrow(2).size());
+        assertEquals(2, openChannels.get());
+    }
+
+    @Test
+    void keepsChannelsWithoutAnIdleTimeout() throws Exception {
+        pool = new RMQChannelPool(1, 4, 5, 0, new RMQChannelFactory(connection));
+        borrow(4).forEach(pool::returnObject);
+        Thread.sleep(5);
+        pool.reapIdle();
+        assertEquals(4, pool.getMetrics().getSize());
+    }
+
+    private List<Channel> borrow(int count) throws Exception {
+        List<Channel> channels = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            channels.add(pool.borrowObject());
+        }
+        return channels;
+    }
+
+    private Channel newChannel() {
+        AtomicBoolean open = new AtomicBoolean(true);
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isOpen":
+                            return open.get();
+                        case "close":
+                            if (open.getAndSet(false)) {
+                                openChannels.decrementAndGet();
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,34 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaRouterTest {
+
+    private static final long MAX_LAG = 64 * 1024;
+
+    @Test
+    void anUnhealthyReplicaTakesNoReads() {
+        assertFalse(ReplicaRouter.inRotation(false, 0, false, MAX_LAG));
+        assertFalse(ReplicaRouter.inRotation(false, 0, true, MAX_LAG));
+    }
+
+    @Test
+    void lagIsIgnoredWithoutReadYourWrites() {
+        assertTrue(ReplicaRouter.inRotation(true, -1, false, MAX_LAG));
+        assertTrue(ReplicaRouter.inRotation(true, MAX_LAG + 1, false, MAX_LAG));
+    }
+
+    @Test
+    void readYourWritesNeedsAMeasuredLagWithinTheLimit() {
+        assertTrue(ReplicaRouter.inRotation(true, 0, true, MAX_LAG));
+        assertTrue(ReplicaRouter.inRotation(true, MAX_LAG, true, MAX_LAG));
+        assertFalse(ReplicaRouter.inRotation(true, MAX_LAG + 1, true, MAX_LAG));
+    }
+
+    @Test
+    void readYourWritesFailsClosedOnAnUnknownLag() {
+        // the primary's offset could not be read, or the replica did not report its own
+        assertFalse(ReplicaRouter.inRotation(true, -1, true, MAX_LAG));
+    }
+}
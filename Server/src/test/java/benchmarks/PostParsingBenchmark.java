@@ -0,0 +1,93 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import common.beans.LiftRide;
+import common.beans.LiftRideMessage;
+import fastpath.LiftRideParser;
+import fastpath.PathTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the POST parsing path: the original split/BufferedReader/Gson sequence
+ * against PathTokenizer + LiftRideParser. Run with the GC profiler to see bytes allocated per request:
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) benchmarks.PostParsingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostParsingBenchmark {
+
+    private final String urlPath = "/skiers/7/seasons/2024/days/1/skiers/48213";
+    private final byte[] body = "{\"time\":217,\"liftID\":21}".getBytes(StandardCharsets.UTF_8);
+    private final Gson gson = new Gson();
+
+    @Benchmark
+    public LiftRideMessage splitAndGson() throws IOException {
+        String[] urlParts = urlPath.split("/");
+        if (urlParts.length != 9 || !urlParts[1].equals("skiers") || !urlParts[3].equals("seasons")
+                || !urlParts[5].equals("days") || !urlParts[7].equals("skiers")) {
+            return null;
+        }
+        Integer.parseInt(urlParts[2]);
+        Integer.parseInt(urlParts[4]);
+        Integer.parseInt(urlParts[6]);
+        Integer.parseInt(urlParts[8]);
+        Integer resortID = Integer.parseInt(urlParts[2]);
+        Integer seasonID = Integer.parseInt(urlParts[4]);
+        Integer dayID = Integer.parseInt(urlParts[6]);
+        Integer skierID = Integer.parseInt(urlParts[8]);
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+            LiftRide liftRide = gson.fromJson(sb.toString(), LiftRide.class);
+            return new LiftRideMessage(resortID, seasonID, dayID, skierID, liftRide);
+        }
+    }
+
+    @Benchmark
+    public LiftRideMessage tokenizerAndStreamingParser() throws IOException {
+        PathTokenizer path = new PathTokenizer(urlPath);
+        if (!(path.literal("skiers") && path.number() && path.literal("seasons") && path.number()
+                && path.literal("days") && path.number() && path.literal("skiers") && path.number()
+                && path.atEnd())) {
+            return null;
+        }
+        LiftRide liftRide = LiftRideParser.parse(new ByteArrayInputStream(body));
+        return new LiftRideMessage(path.get(0), path.get(1), path.get(2), path.get(3), liftRide);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PostParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import common.QueueTopology;
+import common.SharedConfig;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Local benchmark for the cost of declaring the queue on every publish.
+ *
+ * Runs the old per-request sequence (queueDeclare + basicPublish) and the current one
+ * (basicPublish only) against a broker and prints the mean time per request for each.
+ * queueDeclare waits for declare-ok, so the difference is one broker round-trip per request.
+ *
+ * Usage: java benchmarks.QueueDeclareBenchmark [host] [requests]   (defaults: localhost, 20000)
+ */
+public class QueueDeclareBenchmark {
+
+    private static final byte[] MESSAGE =
+            "{\"resortID\":1,\"seasonID\":2024,\"dayID\":1,\"skierID\":42,\"liftRide\":{\"time\":217,\"liftID\":21}}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(host);
+        try (Connection connection = factory.newConnection();
+             Channel channel = connection.createChannel()) {
+            QueueTopology.declare(channel);
+
+            // Warm up both paths before measuring
+            run(channel, requests / 10, true);
+            run(channel, requests / 10, false);
+
+            double withDeclare = run(channel, requests, true);
+            double publishOnly = run(channel, requests, false);
+            channel.queuePurge(SharedConfig.QUEUE_NAME);
+
+            System.out.println("---------------------------------------------------");
+            System.out.println("Requests per run: " + requests);
+            System.out.printf("queueDeclare + basicPublish: %.1f us/request%n", withDeclare);
+            System.out.printf("basicPublish only:           %.1f us/request%n", publishOnly);
+            System.out.printf("Saving per request:          %.1f us (%.1fx)%n",
+                    withDeclare - publishOnly, withDeclare / publishOnly);
+        }
+    }
+
+    private static double run(Channel channel, int requests, boolean declarePerRequest) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            if (declarePerRequest) {
+                channel.queueDeclare(SharedConfig.QUEUE_NAME, SharedConfig.QUEUE_DURABLE, SharedConfig.QUEUE_EXCLUSIVE,
+                        SharedConfig.QUEUE_AUTO_DELETE, SharedConfig.QUEUE_ARGUMENTS);
+            }
+            channel.basicPublish(QueueTopology.EXCHANGE, QueueTopology.ROUTING_KEY, null, MESSAGE);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / requests;
+    }
+}
@@ -0,0 +1,104 @@
+package benchmarks;
+
+import fastpath.PathTokenizer;
+import fastpath.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of GET routing cost per request: the original split("/") + length switch +
+ * equals/parseInt dispatch against the compiled Router. Handlers are just ints so only
+ * routing and path-variable extraction are measured.
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) benchmarks.RoutingBenchmark
+ *
+ * A recorded run (JDK 17, one vCPU) is in benchmarks/RoutingBenchmark.txt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({
+            "/skiers/7/seasons/2024/days/1/skiers/48213",
+            "/resorts/7/seasons/2024/days/1/skiers",
+            "/skiers/48213/vertical"
+    })
+    public String urlPath;
+
+    private final Router<Integer> router = new Router<Integer>()
+            .add("/skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}", 1)
+            .add("/resorts/{resortID}/seasons/{seasonID}/days/{dayID}/skiers", 2)
+            .add("/resorts/{resortID}/seasons/{seasonID}/leaderboard", 3)
+            .add("/skiers/{skierID}/vertical", 4)
+            .add("/skiers/vertical", 5)
+            .add("/metrics", 6);
+
+    @Benchmark
+    public int splitDispatch(Blackhole blackhole) {
+        String[] urlParts = urlPath.split("/");
+        if (urlParts.length == 9) {
+            if (!urlParts[1].equals("skiers") || !urlParts[3].equals("seasons")
+                    || !urlParts[5].equals("days") || !urlParts[7].equals("skiers")) {
+                return 0;
+            }
+            blackhole.consume(Integer.parseInt(urlParts[2]));
+            blackhole.consume(Integer.parseInt(urlParts[4]));
+            blackhole.consume(Integer.parseInt(urlParts[6]));
+            blackhole.consume(Integer.parseInt(urlParts[8]));
+            return 1;
+        } else if (urlParts.length == 8) {
+            if (!urlParts[1].equals("resorts") || !urlParts[3].equals("seasons")
+                    || !urlParts[5].equals("days") || !urlParts[7].equals("skiers")) {
+                return 0;
+            }
+            blackhole.consume(Integer.parseInt(urlParts[2]));
+            blackhole.consume(Integer.parseInt(urlParts[4]));
+            blackhole.consume(Integer.parseInt(urlParts[6]));
+            return 2;
+        } else if (urlParts.length == 4) {
+            if (!urlParts[1].equals("skiers") || !urlParts[3].equals("vertical")) {
+                return 0;
+            }
+            blackhole.consume(Integer.parseInt(urlParts[2]));
+            return 4;
+        }
+        return 0;
+    }
+
+    @Benchmark
+    public int router(Blackhole blackhole) {
+        PathTokenizer path = new PathTokenizer(urlPath);
+        Integer route = router.route(path);
+        if (route == null) {
+            return 0;
+        }
+        blackhole.consume(path.get(0));
+        return route;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RoutingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,155 @@
+package benchmarks;
+
+import common.RedisClient;
+import common.RedisKeys;
+import common.SharedConfig;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Local check of the sharded key layout against several redis-server processes.
+ *
+ * Writes random rides for a block of scratch resorts through RedisClient.getClient() (so in the mode set
+ * by SharedConfig.REDIS_MODE, REDIS_NODES and REDIS_SHARD_BY), then scans every node and prints how many
+ * keys each holds and how many rides had their keys split across nodes, which must be zero.
+ * The scratch keys are deleted afterwards. For example, for "sharded" with REDIS_NODES localhost:7000-7002:
+ *
+ *   for p in 7000 7001 7002; do redis-server --port $p --save "" --daemonize yes; done
+ *
+ * and for "cluster" start them with --cluster-enabled yes and join them with redis-cli --cluster create.
+ *
+ * Usage: java benchmarks.ShardingCheck [rides]   (default: 20000)
+ *
+ * This is a manual harness for a real deployment; common.KeyTagHashingTest covers the same layout
+ * as a unit test without any Redis.
+ */
+public class ShardingCheck {
+
+    // far away from any resort the load tests write; skier IDs stay below 6 digits so the scan pattern
+    // only matches these resorts
+    private static final int FIRST_RESORT_ID = 900_000;
+    private static final int RESORTS = 100;
+    private static final int SKIERS = 99_999;
+    private static final String SCAN_PATTERN = "resort:*9000[0-9][0-9]*";
+
+    public static void main(String[] args) {
+        int rides = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int[][] written = write(rides);
+
+        Map<String, String> keyNodes = new HashMap<>();
+        for (String node : SharedConfig.REDIS_NODES) {
+            try (Jedis jedis = new Jedis(HostAndPort.from(node))) {
+                int keys = 0;
+                String cursor = ScanParams.SCAN_POINTER_START;
+                do {
+                    ScanResult<String> page = jedis.scan(cursor, new ScanParams().match(SCAN_PATTERN).count(1_000));
+                    for (String key : page.getResult()) {
+                        keyNodes.put(key, node);
+                        keys++;
+                    }
+                    cursor = page.getCursor();
+                } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+                System.out.printf("%-22s %,d keys%n", node, keys);
+            }
+        }
+
+        // sharding by skier only keeps the per-skier keys and the resort-wide keys together among themselves
+        boolean bySkier = "skier".equals(SharedConfig.REDIS_SHARD_BY);
+        int split = 0;
+        for (int[] ride : written) {
+            Set<String> skierNodes = nodes(keyNodes, skierKeys(ride));
+            Set<String> resortNodes = nodes(keyNodes, resortKeys(ride));
+            if (!bySkier) {
+                skierNodes.addAll(resortNodes);
+            }
+            if (skierNodes.size() != 1 || resortNodes.size() != 1
+                    || skierNodes.contains(null) || resortNodes.contains(null)) {
+                split++;
+            }
+        }
+
+        delete(keyNodes);
+        System.out.println("---------------------------------------------------");
+        System.out.println("Mode " + SharedConfig.REDIS_MODE + ", sharded by " + SharedConfig.REDIS_SHARD_BY);
+        System.out.printf("Rides written: %,d, rides with keys split across nodes: %,d%n", rides, split);
+        RedisClient.getClient().close();
+    }
+
+    /**
+     * Write the rides with the Consumer's per-ride commands in one pipeline per 1,000 rides.
+     */
+    private static int[][] write(int rides) {
+        Random random = new Random(42);
+        int[][] written = new int[rides][];
+        AbstractPipeline pipeline = RedisClient.getClient().pipelined();
+        for (int i = 0; i < rides; i++) {
+            int[] ride = {FIRST_RESORT_ID + random.nextInt(RESORTS), 2024, 1 + random.nextInt(3),
+                    1 + random.nextInt(SKIERS), 1 + random.nextInt(40)};
+            written[i] = ride;
+            byte[][] skierKeys = skierKeys(ride);
+            byte[][] resortKeys = resortKeys(ride);
+            byte[] skierID = RedisKeys.number(ride[3]);
+            pipeline.hincrBy(skierKeys[0], RedisKeys.VERTICAL_FIELD, ride[4] * 10);
+            pipeline.hincrBy(skierKeys[1], RedisKeys.ALL_FIELD, ride[4] * 10);
+            pipeline.sadd(skierKeys[2], RedisKeys.number(ride[4]));
+            pipeline.sadd(resortKeys[0], skierID);
+            pipeline.zincrby(resortKeys[1], ride[4] * 10, skierID);
+            if (i % 1_000 == 999) {
+                pipeline.sync();
+            }
+        }
+        pipeline.close();
+        return written;
+    }
+
+    /**
+     * ride: resortID, seasonID, dayID, skierID, liftID
+     */
+    private static byte[][] skierKeys(int[] ride) {
+        return new byte[][]{
+                RedisKeys.skierDay(ride[0], ride[1], ride[2], ride[3]),
+                RedisKeys.skierVertical(ride[0], ride[3]),
+                RedisKeys.skierLifts(ride[0], ride[1], ride[2], ride[3])
+        };
+    }
+
+    private static byte[][] resortKeys(int[] ride) {
+        return new byte[][]{
+                RedisKeys.daySkiers(ride[0], ride[1], ride[2]),
+                RedisKeys.leaderboard(ride[0], ride[1])
+        };
+    }
+
+    private static Set<String> nodes(Map<String, String> keyNodes, byte[][] keys) {
+        Set<String> nodes = new HashSet<>();
+        for (byte[] key : keys) {
+            nodes.add(keyNodes.get(new String(key, StandardCharsets.UTF_8)));
+        }
+        return nodes;
+    }
+
+    private static void delete(Map<String, String> keyNodes) {
+        for (String node : SharedConfig.REDIS_NODES) {
+            try (Jedis jedis = new Jedis(HostAndPort.from(node))) {
+                // one key per DEL, since a cluster node rejects multi-key commands across slots
+                AbstractPipeline pipeline = jedis.pipelined();
+                for (Map.Entry<String, String> entry : keyNodes.entrySet()) {
+                    if (entry.getValue().equals(node)) {
+                        pipeline.del(entry.getKey());
+                    }
+                }
+                pipeline.sync();
+            }
+        }
+    }
+}
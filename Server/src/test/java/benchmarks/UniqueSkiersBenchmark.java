@@ -0,0 +1,90 @@
+package benchmarks;
+
+import common.RedisKeys;
+import common.SharedConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Local comparison of exact (SET + SCARD) and approximate (HyperLogLog + PFCOUNT) unique-skier counts.
+ *
+ * Fills one resort-day under a scratch resort ID with the same random skier IDs in both structures,
+ * then prints the memory each key takes (MEMORY USAGE), the mean read latency of SCARD and PFCOUNT,
+ * and the HyperLogLog's relative error. The scratch keys are deleted afterwards.
+ *
+ * Usage: java benchmarks.UniqueSkiersBenchmark [host] [skiers] [reads]   (defaults: localhost, 100000, 20000)
+ */
+public class UniqueSkiersBenchmark {
+
+    // far away from any resort the load tests write
+    private static final int RESORT_ID = 999_999;
+    private static final int SEASON_ID = 2024;
+    private static final int DAY_ID = 1;
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int skiers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int reads = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        byte[] setKey = RedisKeys.daySkiers(RESORT_ID, SEASON_ID, DAY_ID);
+        byte[] hllKey = RedisKeys.daySkiersHll(RESORT_ID, SEASON_ID, DAY_ID);
+
+        try (Jedis jedis = new Jedis(host, SharedConfig.REDIS_PORT)) {
+            jedis.del(setKey, hllKey);
+            fill(jedis, setKey, hllKey, skiers);
+
+            long exact = jedis.scard(setKey);
+            long approx = jedis.pfcount(hllKey);
+
+            // Warm up both reads before measuring
+            readSet(jedis, setKey, reads / 10);
+            readHll(jedis, hllKey, reads / 10);
+            double scardMicros = readSet(jedis, setKey, reads);
+            double pfcountMicros = readHll(jedis, hllKey, reads);
+
+            long setBytes = jedis.memoryUsage(new String(setKey, StandardCharsets.UTF_8));
+            long hllBytes = jedis.memoryUsage(new String(hllKey, StandardCharsets.UTF_8));
+            jedis.del(setKey, hllKey);
+
+            System.out.println("---------------------------------------------------");
+            System.out.println("Distinct skiers written: " + exact);
+            System.out.printf("SET:         %,d bytes, SCARD   %.1f us/read%n", setBytes, scardMicros);
+            System.out.printf("HyperLogLog: %,d bytes, PFCOUNT %.1f us/read%n", hllBytes, pfcountMicros);
+            System.out.printf("HLL estimate %d, error %.2f%%, memory %.1fx smaller%n",
+                    approx, 100.0 * (approx - exact) / exact, (double) setBytes / hllBytes);
+        }
+    }
+
+    private static void fill(Jedis jedis, byte[] setKey, byte[] hllKey, int skiers) {
+        Random random = new Random(42);
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < skiers; i++) {
+            byte[] skierID = RedisKeys.number(random.nextInt(skiers * 2));
+            pipeline.sadd(setKey, skierID);
+            pipeline.pfadd(hllKey, skierID);
+            if (i % 1_000 == 999) {
+                pipeline.sync();
+            }
+        }
+        pipeline.sync();
+    }
+
+    private static double readSet(Jedis jedis, byte[] key, int reads) {
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            jedis.scard(key);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / reads;
+    }
+
+    private static double readHll(Jedis jedis, byte[] key, int reads) {
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            jedis.pfcount(key);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / reads;
+    }
+}
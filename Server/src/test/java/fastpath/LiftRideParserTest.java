@@ -0,0 +1,118 @@
+package fastpath;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import common.beans.LiftRide;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LiftRideParserTest {
+
+    private static final Gson gson = new Gson();
+
+    @Test
+    void parsesALiftRide() {
+        assertEquals(new LiftRide(217, 21), parse("{\"time\": 217, \"liftID\": 21}"));
+        assertEquals(new LiftRide(217, 21), parse(" {\n\t\"liftID\":21 ,\"time\":217}\r\n"));
+    }
+
+    @Test
+    void acceptsQuotedNegativeAndNullValues() {
+        assertEquals(new LiftRide(217, 21), parse("{\"time\":\"217\",\"liftID\":\"21\"}"));
+        assertEquals(new LiftRide(-5, Integer.MIN_VALUE), parse("{\"time\":-5,\"liftID\":-2147483648}"));
+        assertEquals(new LiftRide(null, 21), parse("{\"time\":null,\"liftID\":21}"));
+        assertEquals(new LiftRide(null, null), parse("{}"));
+    }
+
+    @Test
+    void emptyBodyIsNull() {
+        assertNull(parse(""));
+        assertNull(parse("  \n"));
+    }
+
+    @Test
+    void skipsUnknownScalarFields() {
+        assertEquals(new LiftRide(1, 2), parse("{\"time\":1,\"a\":\"x y\",\"b\":true,\"c\":false,\"d\":null,"
+                + "\"e\":-0.5e+3,\"f\":0,\"g\":12E-2,\"liftID\":2}"));
+    }
+
+    @Test
+    void leavesWhatItDoesNotHandleToGson() {
+        // nested values, escapes, floats in known fields and invalid literals: same result as Gson
+        for (String body : Arrays.asList(
+                "{\"time\":1,\"nested\":{\"a\":[1,2]},\"liftID\":2}",
+                "{\"time\":1,\"s\":\"a\\\"b\",\"liftID\":2}",
+                "{\"time\":1,\"x\":--,\"liftID\":2}",
+                "{\"time\":1,\"x\":-,\"liftID\":2}",
+                "{\"time\":1,\"x\":01,\"liftID\":2}",
+                "{\"time\":1,\"x\":1.,\"liftID\":2}",
+                "{\"time\":1,\"x\":1e,\"liftID\":2}",
+                "{\"time\":1,\"x\":truex,\"liftID\":2}")) {
+            assertEquals(gson.fromJson(body, LiftRide.class), parse(body), body);
+        }
+    }
+
+    @Test
+    void rejectsMalformedJsonLikeGson() {
+        for (String body : Arrays.asList("{\"time\":1,", "{\"time\":}", "{\"time\":1 \"liftID\":2}",
+                "{\"time\":1.5,\"liftID\":2}", "{\"time\":2147483648}", "[1,2]")) {
+            assertThrows(JsonSyntaxException.class, () -> gson.fromJson(body, LiftRide.class), body);
+            assertThrows(JsonSyntaxException.class, () -> parse(body), body);
+        }
+    }
+
+    @Test
+    void reusesItsScannerWithoutCarryingValuesOver() {
+        assertEquals(new LiftRide(217, 21), parse("{\"time\":217,\"liftID\":21}"));
+        assertEquals(new LiftRide(null, 3), parse("{\"liftID\":3}"));
+        assertNull(parse(""));
+        assertEquals(new LiftRide(4, null), parse("{\"time\":4}"));
+    }
+
+    @Test
+    void parsesOnlyTheGivenLength() {
+        byte[] body = "{\"time\":1,\"liftID\":2}garbage".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new LiftRide(1, 2), LiftRideParser.parse(body, body.length - "garbage".length()));
+    }
+
+    @Test
+    void readsLargeBodiesFromAStream() throws IOException {
+        StringBuilder body = new StringBuilder("{\"time\":7,");
+        for (int i = 0; i < 200; i++) {
+            body.append("\"field").append(i).append("\":").append(i).append(',');
+        }
+        body.append("\"liftID\":8}");
+        LiftRide ride = LiftRideParser.parse(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(new LiftRide(7, 8), ride);
+    }
+
+    @Test
+    void acceptsABodyOfExactlyTheLimit() throws IOException {
+        byte[] body = new byte[64 * 1024];
+        Arrays.fill(body, (byte) ' ');
+        byte[] ride = "{\"time\":7,\"liftID\":8}".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(ride, 0, body, 0, ride.length);
+        assertEquals(new LiftRide(7, 8), LiftRideParser.parse(new ByteArrayInputStream(body)));
+    }
+
+    @Test
+    void rejectsBodiesOverTheLimit() {
+        byte[] body = new byte[64 * 1024 + 1];
+        Arrays.fill(body, (byte) ' ');
+        assertThrows(IOException.class, () -> LiftRideParser.parse(new ByteArrayInputStream(body)));
+    }
+
+    private static LiftRide parse(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return LiftRideParser.parse(bytes, bytes.length);
+    }
+}
@@ -0,0 +1,95 @@
+package fastpath;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathTokenizerTest {
+
+    @Test
+    void readsASkierDayPath() {
+        PathTokenizer path = new PathTokenizer("/12/seasons/2019/days/1/skiers/110");
+        assertTrue(path.number());
+        assertTrue(path.literal("seasons"));
+        assertTrue(path.number());
+        assertTrue(path.literal("days"));
+        assertTrue(path.number());
+        assertTrue(path.literal("skiers"));
+        assertTrue(path.number());
+        assertTrue(path.atEnd());
+        assertEquals(12, path.get(0));
+        assertEquals(2019, path.get(1));
+        assertEquals(1, path.get(2));
+        assertEquals(110, path.get(3));
+    }
+
+    @Test
+    void acceptsOneTrailingSlash() {
+        PathTokenizer path = new PathTokenizer("/7/vertical/");
+        assertTrue(path.number());
+        assertTrue(path.literal("vertical"));
+        assertTrue(path.atEnd());
+
+        PathTokenizer twoSlashes = new PathTokenizer("/7/vertical//");
+        assertTrue(twoSlashes.number());
+        assertTrue(twoSlashes.literal("vertical"));
+        assertFalse(twoSlashes.atEnd());
+    }
+
+    @Test
+    void matchesWholeSegmentsOnly() {
+        assertFalse(new PathTokenizer("/seasonsX/1").literal("seasons"));
+        assertFalse(new PathTokenizer("/season").literal("seasons"));
+        assertFalse(new PathTokenizer("seasons").literal("seasons"));
+        assertFalse(new PathTokenizer("").literal("seasons"));
+        assertTrue(new PathTokenizer("/seasons").literal("seasons"));
+    }
+
+    @Test
+    void parsesNumbersLikeIntegerParseInt() {
+        assertNumber("/+5", 5);
+        assertNumber("/-5", -5);
+        assertNumber("/007", 7);
+        assertNumber("/2147483647", Integer.MAX_VALUE);
+        assertNumber("/-2147483648", Integer.MIN_VALUE);
+    }
+
+    @Test
+    void rejectsBadNumbers() {
+        for (String path : new String[]{"/", "//1", "/-", "/+", "/12a", "/1.5", "/ 1", "/2147483648",
+                "/-2147483649", "/99999999999999999999", "1"}) {
+            assertFalse(new PathTokenizer(path).number(), path);
+        }
+    }
+
+    @Test
+    void keepsAtMostFourValues() {
+        PathTokenizer path = new PathTokenizer("/1/2/3/4/5");
+        for (int i = 0; i < 4; i++) {
+            assertTrue(path.number());
+        }
+        assertFalse(path.number());
+        assertEquals(4, path.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> path.get(4));
+    }
+
+    @Test
+    void aFailedMatchConsumesNothing() {
+        PathTokenizer path = new PathTokenizer("/12/seasons");
+        assertFalse(path.literal("days"));
+        assertTrue(path.number());
+        assertFalse(path.number());
+        assertTrue(path.literal("seasons"));
+        assertTrue(path.atEnd());
+    }
+
+    private static void assertNumber(String path, int expected) {
+        PathTokenizer tokenizer = new PathTokenizer(path);
+        assertTrue(tokenizer.number(), path);
+        assertEquals(expected, tokenizer.get(0), path);
+        assertTrue(tokenizer.atEnd(), path);
+    }
+}
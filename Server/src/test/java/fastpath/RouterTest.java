@@ -0,0 +1,62 @@
+package fastpath;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RouterTest {
+
+    private final Router<String> router = new Router<String>()
+            .add("/skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}", "skierDay")
+            .add("/resorts/{resortID}/seasons/{seasonID}/days/{dayID}/skiers", "resortDay")
+            .add("/resorts/{resortID}/seasons/{seasonID}/leaderboard", "leaderboard")
+            .add("/skiers/{skierID}/vertical", "skierTotal")
+            .add("/skiers/vertical", "bulkVertical")
+            .add("/metrics", "metrics");
+
+    @Test
+    void routesAndReadsVariablesInPathOrder() {
+        PathTokenizer path = new PathTokenizer("/skiers/7/seasons/2024/days/1/skiers/48213");
+        assertEquals("skierDay", router.route(path));
+        assertEquals(7, path.get(0));
+        assertEquals(2024, path.get(1));
+        assertEquals(1, path.get(2));
+        assertEquals(48213, path.get(3));
+
+        path = new PathTokenizer("/resorts/3/seasons/2019/leaderboard");
+        assertEquals("leaderboard", router.route(path));
+        assertEquals(3, path.get(0));
+        assertEquals(2019, path.get(1));
+    }
+
+    @Test
+    void prefersALiteralOverAVariable() {
+        assertEquals("bulkVertical", router.route(new PathTokenizer("/skiers/vertical")));
+        PathTokenizer path = new PathTokenizer("/skiers/42/vertical");
+        assertEquals("skierTotal", router.route(path));
+        assertEquals(42, path.get(0));
+    }
+
+    @Test
+    void acceptsOneTrailingSlash() {
+        assertEquals("metrics", router.route(new PathTokenizer("/metrics/")));
+        assertEquals("skierTotal", router.route(new PathTokenizer("/skiers/42/vertical/")));
+    }
+
+    @Test
+    void rejectsPathsWithoutARoute() {
+        for (String path : new String[]{"", "/", "/skiers", "/skiers/42", "/skiers/x/vertical",
+                "/skiers/42/vertical/extra", "/resorts/3/seasons/2019", "/metric", "/metrics//",
+                "/skiers/7/seasons/2024/days/1/skiers/99999999999"}) {
+            assertNull(router.route(new PathTokenizer(path)), path);
+        }
+    }
+
+    @Test
+    void rejectsBadPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> router.add("metrics", "x"));
+        assertThrows(IllegalArgumentException.class, () -> router.add("/skiers/{id}/vertical", "x"));
+    }
+}
@@ -3,13 +3,12 @@ import io.swagger.client.ApiException;
 import io.swagger.client.ApiResponse;
 import io.swagger.client.api.SkiersApi;
 import models.LiftEvent;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
 class ApiPostClient implements Runnable {
-    private BlockingQueue<LiftEvent> eventQueue;
+    private DataGenerator generator;
     private CountDownLatch latch;
     private int numRequests;
     private SkiersApi skiersApi;
@@ -18,8 +17,8 @@ class ApiPostClient implements Runnable {
     public static AtomicInteger successfulRequests = new AtomicInteger(0);
     public static AtomicInteger failedRequests = new AtomicInteger(0);
 
-    public ApiPostClient(BlockingQueue<LiftEvent> eventQueue, CountDownLatch latch, int numRequests, String url) {
-        this.eventQueue = eventQueue;
+    public ApiPostClient(DataGenerator generator, CountDownLatch latch, int numRequests, String url) {
+        this.generator = generator;
         this.latch = latch;
         this.numRequests = numRequests;
 
@@ -30,15 +29,17 @@ class ApiPostClient implements Runnable {
 
     @Override
     public void run() {
-        for (int i = 0; i < numRequests; i++) {
-            try {
-                LiftEvent event = eventQueue.take();
-                postEvent(event);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        try {
+            for (int i = 0; i < numRequests; i++) {
+                postEvent(generator.take());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            System.err.println("Stopping sender: " + e.getMessage());
+        } finally {
+            latch.countDown();
         }
-        latch.countDown();
     }
 
     private void postEvent(LiftEvent event) {
@@ -1,10 +1,25 @@
-import lombok.Getter;
 import models.LiftEvent;
 import io.swagger.client.model.LiftRide;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToDoubleFunction;
 
+/**
+ * DataGenerator is for generating lift ride events for skiers.
+ * The generated events are placed into a bounded BlockingQueue, which the senders drain while it is
+ * being filled through take(), so requests start as soon as the first event exists and memory is the
+ * queue's capacity, not the whole run. If the generator stops before producing every event, take()
+ * fails instead of leaving the senders waiting forever.
+ *
+ * Events follow a skewed, more realistic mix rather than uniform ids: skiers and lifts are drawn
+ * from Zipf distributions (a few regulars and busy lifts account for most rides), and ride times
+ * follow a day curve with a morning peak, a lunch dip and an afternoon peak. An exponent of 0 or
+ * TIME_OF_DAY_CURVE = false gives the uniform draws back. With the same seed, a run generates the
+ * same events in the same order.
+ */
 public class DataGenerator implements Runnable {
 
     private static final int SKIER_MAX_ID = 100000;
@@ -13,39 +28,148 @@ public class DataGenerator implements Runnable {
     private static final int SEASON_ID = 2024;
     private static final int DAY_ID = 1;
     private static final int TIME_MAX = 360;
+    // events generated ahead of the senders
+    private static final int QUEUE_CAPACITY = 10_000;
+    // how often a waiting take() checks whether the generator has stopped
+    private static final long POLL_MILLIS = 100;
+    // Zipf exponents: P(rank k) is proportional to 1 / k^s, 0 is uniform
+    private static final double SKIER_ZIPF_EXPONENT = 0.8;
+    private static final double LIFT_ZIPF_EXPONENT = 1.0;
+    private static final boolean TIME_OF_DAY_CURVE = true;
+
+    // shared by every generator, they only depend on the constants above
+    private static final Sampler SKIERS = Sampler.zipf(SKIER_MAX_ID, SKIER_ZIPF_EXPONENT);
+    private static final Sampler LIFTS = Sampler.zipf(LIFT_MAX_ID, LIFT_ZIPF_EXPONENT);
+    private static final Sampler TIMES = TIME_OF_DAY_CURVE
+            ? new Sampler(TIME_MAX, DataGenerator::rideRateAt)
+            : Sampler.zipf(TIME_MAX, 0);
+
     private final int liftEventNum;
+    private final SplittableRandom random;
 
-    @Getter
     private final BlockingQueue<LiftEvent> generatedItems;
+    // events put into the queue so far, written by the generator thread only
+    private volatile int generated;
+    // set once run() returns, whether it generated every event or not
+    private volatile boolean stopped;
 
+    /**
+     * Constructor to initialize the DataGenerator with the number of events to generate,
+     * seeded from the clock.
+     *
+     * @param liftEventNum Number of lift events to generate
+     */
     public DataGenerator(int liftEventNum) {
+        this(liftEventNum, System.nanoTime());
+    }
+
+    /**
+     * Constructor for a reproducible run: the same seed generates the same events.
+     *
+     * @param liftEventNum Number of lift events to generate
+     * @param seed Seed of the random generator
+     */
+    public DataGenerator(int liftEventNum, long seed) {
         this.liftEventNum = liftEventNum;
-        this.generatedItems = new ArrayBlockingQueue<>(liftEventNum);
+        this.random = new SplittableRandom(seed);
+        this.generatedItems = new ArrayBlockingQueue<>(Math.max(1, Math.min(liftEventNum, QUEUE_CAPACITY)));
     }
 
+    /**
+     * The run method generates the specified number of lift events and places them
+     * in the BlockingQueue, waiting whenever it is full. It is called when the thread starts.
+     */
     @Override
     public void run() {
-        for (int i = 0; i < liftEventNum; i++) {
-            try {
-                LiftEvent event = generateLiftEvent();
-                generatedItems.put(event);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("Data generation interrupted: " + e.getMessage());
+        try {
+            for (int i = 0; i < liftEventNum; i++) {
+                generatedItems.put(generateLiftEvent());
+                generated++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Data generation interrupted: " + e.getMessage());
+        } finally {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Takes the next generated event, waiting while the generator catches up.
+     *
+     * @return The next LiftEvent
+     * @throws IllegalStateException If the generator stopped before producing another event
+     */
+    public LiftEvent take() throws InterruptedException {
+        while (true) {
+            LiftEvent event = generatedItems.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (event != null) {
+                return event;
+            }
+            if (stopped) {
+                // the last events may have been put just before it stopped
+                event = generatedItems.poll();
+                if (event != null) {
+                    return event;
+                }
+                throw new IllegalStateException("Data generator stopped after " + generated + " of "
+                        + liftEventNum + " events");
             }
         }
     }
 
+    /**
+     * Generates a single LiftEvent object with random attributes.
+     *
+     * @return A new LiftEvent object
+     */
     private LiftEvent generateLiftEvent() {
-        int liftID = ThreadLocalRandom.current().nextInt(1, LIFT_MAX_ID + 1);
-        int time = ThreadLocalRandom.current().nextInt(1, TIME_MAX + 1);
+        int liftID = LIFTS.sample(random);
+        int time = TIMES.sample(random);
         LiftRide liftRide = new LiftRide();
         liftRide.setTime(time);
         liftRide.setLiftID(liftID);
 
-        int skierID = ThreadLocalRandom.current().nextInt(1, SKIER_MAX_ID + 1);
-        int resortID = ThreadLocalRandom.current().nextInt(1, RESORT_MAX_ID + 1);
+        int skierID = SKIERS.sample(random);
+        int resortID = random.nextInt(1, RESORT_MAX_ID + 1);
         return new LiftEvent(liftRide, skierID, resortID, SEASON_ID, DAY_ID);
     }
 
+    /**
+     * Relative rate of lift rides in a minute of the day, 1 being the opening minute: a morning peak
+     * after opening, a dip over lunch and a smaller afternoon peak.
+     */
+    private static double rideRateAt(int minute) {
+        return 1.0
+                + 1.5 * Math.exp(-Math.pow((minute - 75) / 45.0, 2))
+                - 0.5 * Math.exp(-Math.pow((minute - 180) / 25.0, 2))
+                + 1.0 * Math.exp(-Math.pow((minute - 255) / 50.0, 2));
+    }
+
+    /**
+     * Draws values 1..n with the given relative weights by binary search over their cumulative sums.
+     */
+    private static class Sampler {
+        private final double[] cumulative;
+
+        Sampler(int n, IntToDoubleFunction weight) {
+            this.cumulative = new double[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += weight.applyAsDouble(i + 1);
+                cumulative[i] = total;
+            }
+        }
+
+        static Sampler zipf(int n, double exponent) {
+            return new Sampler(n, rank -> 1.0 / Math.pow(rank, exponent));
+        }
+
+        int sample(SplittableRandom random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            // not found gives -(insertion point) - 1, the first sum above target
+            return (index >= 0 ? index + 1 : -index - 1) + 1;
+        }
+    }
 }
@@ -1,4 +1,3 @@
-import models.LiftEvent;
 import java.util.concurrent.*;
 
 public class MultiThreadClient {
@@ -10,18 +9,18 @@ public class MultiThreadClient {
     private static final int INITIAL_THREADS = 32;
     private static final int REQUESTS_PER_THREAD = 1000;
     private static final int INITIAL_THREAD_COMPLETION_THRESHOLD = 1;
+    // fixed seed: every run sends the same events
+    private static final long SEED = 2024;
 
     public static void main(String[] args) throws InterruptedException {
         // Start
         long startTime = System.currentTimeMillis();
 
-        // Generate lift events
-        DataGenerator generator = new DataGenerator(TOTAL_REQUESTS);
-        Thread generatorThread = new Thread(generator);
+        // Generate lift events while they are being sent
+        DataGenerator generator = new DataGenerator(TOTAL_REQUESTS, SEED);
+        Thread generatorThread = new Thread(generator, "data-generator");
+        generatorThread.setDaemon(true);
         generatorThread.start();
-        generatorThread.join();
-        BlockingQueue<LiftEvent> eventQueue = generator.getGeneratedItems();
-        System.out.println("Data generation completed, queue size: " + eventQueue.size());
 
 
         // Create 32 threads and start
@@ -30,7 +29,7 @@ public class MultiThreadClient {
 
 
         for (int i = 0; i < INITIAL_THREADS; i++) {
-            initialExecutor.submit(new ApiPostClient(eventQueue, initialLatch, REQUESTS_PER_THREAD, URL));
+            initialExecutor.submit(new ApiPostClient(generator, initialLatch, REQUESTS_PER_THREAD, URL));
         }
 
         initialLatch.await();
@@ -48,13 +47,14 @@ public class MultiThreadClient {
         CountDownLatch remainingLatch = new CountDownLatch(additionalThreads);
 
         for (int i = 0; i < additionalThreads; i++) {
-            remainingExecutor.submit(new ApiPostClient(eventQueue, remainingLatch, REQUESTS_PER_THREAD, URL));
+            remainingExecutor.submit(new ApiPostClient(generator, remainingLatch, REQUESTS_PER_THREAD, URL));
         }
 
         remainingLatch.await();
 
         initialExecutor.shutdown();
         remainingExecutor.shutdown();
+        stopGenerator(generatorThread);
 
         long endTime = System.currentTimeMillis();
         long duration2 = endTime - initialThreadFinishTime;
@@ -69,5 +69,16 @@ public class MultiThreadClient {
         System.out.println("Total time taken: " + totalDuration + " milliseconds");
         System.out.println("Throughput: " + (totalRequestsSent * 1000.0 / totalDuration) + " requests/second");
     }
+
+    /**
+     * Waits for the generator thread to end, interrupting it first if the senders stopped early
+     * and left it blocked on a full queue.
+     */
+    private static void stopGenerator(Thread generatorThread) throws InterruptedException {
+        if (generatorThread.isAlive()) {
+            generatorThread.interrupt();
+        }
+        generatorThread.join();
+    }
 }
 
@@ -36,13 +36,12 @@ public class LatencyTest {
         }
 
         System.out.println("Data generator finished");
-        BlockingQueue<LiftEvent> eventQueue = generator.getGeneratedItems();
 
         long startTime = System.currentTimeMillis();
 
         for (int i = 0; i < TOTAL_REQUESTS; i++) {
             try {
-                LiftEvent event = eventQueue.take();
+                LiftEvent event = generator.take();
                 postEvent(event);
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
@@ -1,13 +1,12 @@
+import com.squareup.okhttp.ConnectionPool;
 import io.swagger.client.ApiClient;
 import io.swagger.client.ApiException;
 import io.swagger.client.ApiResponse;
 import io.swagger.client.api.SkiersApi;
 import models.LiftEvent;
-import models.Record;
 
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -15,28 +14,34 @@ import java.util.concurrent.atomic.AtomicInteger;
  * to the Skiers API using multiple threads.
  */
 class ApiPostClient implements Runnable {
-    private BlockingQueue<LiftEvent> eventQueue;
-    private List<Record> recordList;
+    private DataGenerator generator;
+    private LatencyRecorder latencyRecorder;
+    // per-request log, null when it is off
+    private RecordSink recordSink;
     private CountDownLatch latch;
     private int numRequests;
     private SkiersApi skiersApi;
 
     private static final int RETRY_COUNT = 5;
+    private static final long KEEP_ALIVE_MS = TimeUnit.MINUTES.toMillis(5);
     public static AtomicInteger successfulRequests = new AtomicInteger(0);
     public static AtomicInteger failedRequests = new AtomicInteger(0);
 
     /**
      * Constructor
      *
-     * @param eventQueue BlockingQueue containing the LiftEvent objects to be posted
-     * @param recordList List to record details of each request's latency and response status
+     * @param generator Source of the LiftEvent objects to be posted
+     * @param latencyRecorder Histograms to record each request's latency in
+     * @param recordSink Sink for the per-request log, or null
      * @param latch CountDownLatch to signal when the thread has finished processing requests
      * @param numRequests Number of requests to be handled by this client
      * @param url Base URL for the Skiers API
      */
-    public ApiPostClient(BlockingQueue<LiftEvent> eventQueue, List<Record> recordList, CountDownLatch latch, int numRequests, String url) {
-        this.eventQueue = eventQueue;
-        this.recordList = recordList;
+    public ApiPostClient(DataGenerator generator, LatencyRecorder latencyRecorder, RecordSink recordSink,
+                         CountDownLatch latch, int numRequests, String url) {
+        this.generator = generator;
+        this.latencyRecorder = latencyRecorder;
+        this.recordSink = recordSink;
         this.latch = latch;
         this.numRequests = numRequests;
 
@@ -45,22 +50,53 @@ class ApiPostClient implements Runnable {
         this.skiersApi = new SkiersApi(client);
     }
 
+    /**
+     * Constructor for a single instance shared by every in-flight request, each calling postEvent
+     * directly, so they all share one ApiClient and its connection pool.
+     *
+     * @param latencyRecorder Histograms to record each request's latency in
+     * @param recordSink Sink for the per-request log, or null
+     * @param url Base URL for the Skiers API
+     * @param maxConnections Number of idle connections to keep, at least the expected requests in flight
+     */
+    public ApiPostClient(LatencyRecorder latencyRecorder, RecordSink recordSink, String url, int maxConnections) {
+        this.latencyRecorder = latencyRecorder;
+        this.recordSink = recordSink;
+
+        ApiClient client = new ApiClient();
+        client.setBasePath(url);
+        // keep a connection per in-flight request instead of OkHttp's default of 5 idle connections
+        client.getHttpClient().setConnectionPool(new ConnectionPool(maxConnections, KEEP_ALIVE_MS));
+        this.skiersApi = new SkiersApi(client);
+    }
+
     /**
      * Main execution method for the Runnable. This method is called when the thread starts.
-     * It processes the requests by taking events from the queue, making POST requests,
-     * and tracking the results.
+     * It processes the requests by taking events from the generator, making POST requests,
+     * and tracking the results. The latch is counted down however the thread ends.
      */
     @Override
     public void run() {
-        for (int i = 0; i < numRequests; i++) {
-            try {
-                LiftEvent event = eventQueue.take();
-                postEvent(event);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        try {
+            for (int i = 0; i < numRequests; i++) {
+                postEvent(generator.take());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            System.err.println("Stopping sender: " + e.getMessage());
+        } finally {
+            latch.countDown();
         }
-        latch.countDown();
+    }
+
+    /**
+     * Sends a POST request for a given LiftEvent right away; see postEvent(LiftEvent, long).
+     *
+     * @param event The LiftEvent to be posted
+     */
+    void postEvent(LiftEvent event) {
+        postEvent(event, System.nanoTime());
     }
 
     /**
@@ -68,10 +104,13 @@ class ApiPostClient implements Runnable {
      * Retries the request up to RETRY_COUNT times if it fails.
      *
      * @param event The LiftEvent to be posted
+     * @param intendedNanos When the request should have been sent, by System.nanoTime(); its response time starts here
      */
-    private void postEvent(LiftEvent event) {
+    void postEvent(LiftEvent event, long intendedNanos) {
         for (int i = 0; i < RETRY_COUNT; i++) {
             long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            int statusCode;
 
             try {
                 ApiResponse<Void> response = skiersApi.writeNewLiftRideWithHttpInfo(
@@ -80,27 +119,26 @@ class ApiPostClient implements Runnable {
                         String.valueOf(event.getSeasonID()),
                         String.valueOf(event.getDayID()),
                         event.getSkierID());
-
-                long endTime = System.currentTimeMillis();
-                long latency = endTime - startTime;
-
-                synchronized (recordList) {
-                    recordList.add(new Record(startTime, "POST", latency, response.getStatusCode()));
-                }
-
-                if (response.getStatusCode() == 201) {
-                    successfulRequests.incrementAndGet();
-                    return;
-                } 
+                statusCode = response.getStatusCode();
             } catch (ApiException e) {
-                long endTime = System.currentTimeMillis();
-                long latency = endTime - startTime;
-                synchronized (recordList) {
-                    recordList.add(new Record(startTime, "POST", latency, 500));
-                }
+                statusCode = 500;
                 System.err.println("API error: " + e.getMessage());
             }
+
+            long endNanos = System.nanoTime();
+            record(startTime, endNanos - startNanos, endNanos - intendedNanos, statusCode);
+            if (statusCode == 201) {
+                successfulRequests.incrementAndGet();
+                return;
+            }
         }
         failedRequests.incrementAndGet();
     }
+
+    private void record(long startTime, long serviceNanos, long responseNanos, int statusCode) {
+        latencyRecorder.record(serviceNanos, responseNanos);
+        if (recordSink != null) {
+            recordSink.add(startTime, serviceNanos, responseNanos, statusCode);
+        }
+    }
 }
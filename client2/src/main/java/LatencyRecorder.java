@@ -0,0 +1,102 @@
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyRecorder collects request latencies in HdrHistograms at microsecond resolution, so memory
+ * stays the same however many requests run and recording takes no lock.
+ *
+ * Response time and service time each go into an HdrHistogram Recorder, which any number of threads
+ * (platform or virtual) can write to wait-free. Once a second sampleInterval() swaps out the interval
+ * histograms, appends them to an HdrHistogram log (tagged "response" and "service") and merges them
+ * into the totals for the run.
+ */
+public class LatencyRecorder {
+
+    // one hour in microseconds; anything slower is recorded as one hour
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder responseRecorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Recorder serviceRecorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Histogram responseTimes = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Histogram serviceTimes = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final HistogramLogWriter logWriter;
+    // recycled between intervals
+    private Histogram responseInterval;
+    private Histogram serviceInterval;
+
+    /**
+     * Constructor
+     *
+     * @param logPath Path of the HdrHistogram interval log to write
+     * @throws FileNotFoundException If the log file can not be created
+     */
+    public LatencyRecorder(String logPath) throws FileNotFoundException {
+        File logFile = new File(logPath);
+        if (logFile.getParentFile() != null) {
+            logFile.getParentFile().mkdirs();
+        }
+        long now = System.currentTimeMillis();
+        this.logWriter = new HistogramLogWriter(logFile);
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(now);
+        logWriter.setBaseTime(now);
+        logWriter.outputLegend();
+    }
+
+    /**
+     * Records one attempt.
+     *
+     * @param serviceNanos Time from sending the request to its response
+     * @param responseNanos Time from the request's intended send time to its response
+     */
+    public void record(long serviceNanos, long responseNanos) {
+        serviceRecorder.recordValue(toMicros(serviceNanos));
+        responseRecorder.recordValue(toMicros(responseNanos));
+    }
+
+    /**
+     * Closes the current interval: logs it and adds it to the run totals.
+     */
+    public synchronized void sampleInterval() {
+        responseInterval = responseRecorder.getIntervalHistogram(responseInterval);
+        serviceInterval = serviceRecorder.getIntervalHistogram(serviceInterval);
+        responseInterval.setTag("response");
+        serviceInterval.setTag("service");
+        logWriter.outputIntervalHistogram(responseInterval);
+        logWriter.outputIntervalHistogram(serviceInterval);
+        responseTimes.add(responseInterval);
+        serviceTimes.add(serviceInterval);
+    }
+
+    /**
+     * Takes the last interval and closes the log. The totals are complete after this.
+     */
+    public synchronized void close() {
+        sampleInterval();
+        logWriter.close();
+    }
+
+    /**
+     * @return Response times of the run so far, in microseconds
+     */
+    public synchronized Histogram getResponseTimes() {
+        return responseTimes.copy();
+    }
+
+    /**
+     * @return Service times of the run so far, in microseconds
+     */
+    public synchronized Histogram getServiceTimes() {
+        return serviceTimes.copy();
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+}
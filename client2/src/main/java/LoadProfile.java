@@ -0,0 +1,85 @@
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * LoadProfile is the target request rate of the open-loop mode over the course of a run.
+ */
+class LoadProfile {
+
+    // requests/second as a function of seconds since the start
+    private final DoubleUnaryOperator rate;
+    private final String description;
+
+    private LoadProfile(DoubleUnaryOperator rate, String description) {
+        this.rate = rate;
+        this.description = description;
+    }
+
+    /**
+     * The same rate for the whole run.
+     *
+     * @param requestsPerSecond Target rate
+     */
+    static LoadProfile constant(double requestsPerSecond) {
+        checkRate(requestsPerSecond);
+        return new LoadProfile(elapsed -> requestsPerSecond, "constant " + requestsPerSecond + " req/s");
+    }
+
+    /**
+     * A linear ramp from one rate to another, then holding the final rate.
+     *
+     * @param fromRate Rate at the start, in requests/second
+     * @param toRate Rate at the end of the ramp and afterwards, in requests/second
+     * @param rampSeconds Length of the ramp
+     */
+    static LoadProfile ramp(double fromRate, double toRate, double rampSeconds) {
+        checkRate(fromRate);
+        checkRate(toRate);
+        return new LoadProfile(
+                elapsed -> elapsed >= rampSeconds ? toRate : fromRate + (toRate - fromRate) * elapsed / rampSeconds,
+                "ramp " + fromRate + " to " + toRate + " req/s over " + rampSeconds + " s");
+    }
+
+    /**
+     * A staircase: start at one rate and add a fixed increment every step, up to a maximum.
+     *
+     * @param startRate Rate of the first step, in requests/second
+     * @param stepRate Increment per step, in requests/second
+     * @param stepSeconds Length of each step
+     * @param maxRate Rate to stop climbing at, in requests/second, at least startRate
+     */
+    static LoadProfile step(double startRate, double stepRate, double stepSeconds, double maxRate) {
+        checkRate(startRate);
+        checkRate(maxRate);
+        if (maxRate < startRate) {
+            throw new IllegalArgumentException("Maximum rate " + maxRate + " is below the start rate " + startRate);
+        }
+        if (!(stepRate >= 0)) {
+            throw new IllegalArgumentException("Step increment must not be negative: " + stepRate);
+        }
+        if (!(stepSeconds > 0)) {
+            throw new IllegalArgumentException("Step length must be positive: " + stepSeconds);
+        }
+        return new LoadProfile(
+                elapsed -> Math.min(maxRate, startRate + stepRate * Math.floor(elapsed / stepSeconds)),
+                "step " + startRate + " req/s + " + stepRate + " every " + stepSeconds + " s up to " + maxRate);
+    }
+
+    /**
+     * @param elapsedSeconds Seconds since the start of the run
+     * @return The target rate at that time, in requests/second
+     */
+    double rateAt(double elapsedSeconds) {
+        return rate.applyAsDouble(elapsedSeconds);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private static void checkRate(double requestsPerSecond) {
+        if (!(requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("Rate must be positive: " + requestsPerSecond);
+        }
+    }
+}
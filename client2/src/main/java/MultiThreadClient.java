@@ -1,13 +1,7 @@
-import models.LiftEvent;
-import models.Record;
-
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.*;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.HdrHistogram.Histogram;
 
 public class MultiThreadClient {
 
@@ -18,19 +12,36 @@ public class MultiThreadClient {
     private static final int INITIAL_THREADS = 32;
     private static final int REQUESTS_PER_THREAD = 1000;
     private static final int INITIAL_THREAD_COMPLETION_THRESHOLD = 1;
+    // fixed seed: every run sends the same events
+    private static final long SEED = 2024;
+    // true: one virtual thread per request (Java 21+), at most MAX_IN_FLIGHT at once,
+    // false: the two phases of platform threads below
+    private static final boolean VIRTUAL_THREAD_MODE = false;
+    private static final int MAX_IN_FLIGHT = 10_000;
+    // Open loop: send at LOAD_PROFILE's rate whether or not responses keep up, measuring response time
+    // from each request's intended send time. Takes precedence over VIRTUAL_THREAD_MODE.
+    private static final boolean OPEN_LOOP_MODE = false;
+    private static final LoadProfile LOAD_PROFILE = LoadProfile.constant(2_000);
+    // alternatives: LoadProfile.ramp(500, 5_000, 60), LoadProfile.step(1_000, 500, 10, 5_000)
+    private static final int OPEN_LOOP_MAX_WORKERS = 2_000;
+    // Latency histograms are always kept; the per-request log is streamed to REQUEST_LOG_PATH plus the
+    // format's extension: CSV, CSV_GZIP or the compact BINARY
+    private static final boolean WRITE_REQUEST_LOG = true;
+    private static final String REQUEST_LOG_PATH = "output/api_request_log";
+    private static final RecordSink.Format REQUEST_LOG_FORMAT = RecordSink.Format.CSV;
+    private static final String LATENCY_LOG_PATH = "output/latency.hlog";
 
     public static void main(String[] args) throws InterruptedException, IOException {
 
-        // Generate lift events
-        DataGenerator generator = new DataGenerator(TOTAL_REQUESTS);
-        Thread generatorThread = new Thread(generator);
+        // Generate lift events while they are being sent
+        DataGenerator generator = new DataGenerator(TOTAL_REQUESTS, SEED);
+        Thread generatorThread = new Thread(generator, "data-generator");
+        generatorThread.setDaemon(true);
         generatorThread.start();
-        generatorThread.join();
-        BlockingQueue<LiftEvent> eventQueue = generator.getGeneratedItems();
-        System.out.println("Data generation completed, queue size: " + eventQueue.size());
 
-        // List to store the records of API responses
-        List<Record> recordList = new ArrayList<>();
+        // Latency histograms, and the sink writing a record of each API response to the request log
+        LatencyRecorder latencyRecorder = new LatencyRecorder(LATENCY_LOG_PATH);
+        RecordSink recordSink = WRITE_REQUEST_LOG ? new RecordSink(REQUEST_LOG_PATH, REQUEST_LOG_FORMAT) : null;
 
         // Instance of ThroughputPlotWriter to collect and plot throughput data
         ThroughputPlotWriter throughputPlotWriter = new ThroughputPlotWriter();
@@ -45,15 +56,59 @@ public class MultiThreadClient {
             int totalRequests = ApiPostClient.successfulRequests.get() + ApiPostClient.failedRequests.get();
             double throughput = totalRequests / (elapsedTime / 1000.0);
             throughputPlotWriter.addThroughputData(elapsedTime / 1000.0, throughput);
+            latencyRecorder.sampleInterval();
         }, 1, 1, TimeUnit.SECONDS);
 
+        if (OPEN_LOOP_MODE) {
+            new OpenLoopRunner(LOAD_PROFILE, OPEN_LOOP_MAX_WORKERS, URL)
+                    .run(generator, latencyRecorder, recordSink, TOTAL_REQUESTS);
+        } else if (VIRTUAL_THREAD_MODE) {
+            new VirtualThreadRunner(MAX_IN_FLIGHT, URL).run(generator, latencyRecorder, recordSink, TOTAL_REQUESTS);
+        } else {
+            runPlatformThreads(generator, latencyRecorder, recordSink);
+        }
+        stopGenerator(generatorThread);
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        latencyRecorder.close();
+        if (recordSink != null) {
+            recordSink.close();
+        }
+
+        long endTime = System.currentTimeMillis();
+        long duration = endTime - startTime;
+
+        // Print performance statistics
+        printStats(duration);
+
+        // Calculate and print more detailed statistics
+        calculateAndPrintStatistics(latencyRecorder, duration);
+        if (recordSink != null) {
+            System.out.println("Request log: " + recordSink.getPath());
+        }
+
+        // Plot throughput data
+        throughputPlotWriter.plotThroughput();
+    }
+
+    /**
+     * Sends the requests with INITIAL_THREADS platform threads, then once one of them finishes,
+     * enough further threads of REQUESTS_PER_THREAD requests each to reach TOTAL_REQUESTS.
+     *
+     * @param generator The source of generated lift events.
+     * @param latencyRecorder The histograms recording each request's latency.
+     * @param recordSink The sink for the per-request log, or null.
+     */
+    private static void runPlatformThreads(DataGenerator generator, LatencyRecorder latencyRecorder,
+                                           RecordSink recordSink) throws InterruptedException {
         // Create 32 threads and start
         ExecutorService initialExecutor = Executors.newFixedThreadPool(INITIAL_THREADS);
         CountDownLatch initialLatch = new CountDownLatch(INITIAL_THREAD_COMPLETION_THRESHOLD);
 
         // Submit API Post Client tasks to initial threads
         for (int i = 0; i < INITIAL_THREADS; i++) {
-            initialExecutor.submit(new ApiPostClient(eventQueue, recordList, initialLatch, REQUESTS_PER_THREAD, URL));
+            initialExecutor.submit(new ApiPostClient(generator, latencyRecorder, recordSink, initialLatch,
+                    REQUESTS_PER_THREAD, URL));
         }
 
         initialLatch.await();
@@ -67,30 +122,27 @@ public class MultiThreadClient {
         CountDownLatch remainingLatch = new CountDownLatch(additionalThreads);
 
         for (int i = 0; i < additionalThreads; i++) {
-            remainingExecutor.submit(new ApiPostClient(eventQueue, recordList, remainingLatch, REQUESTS_PER_THREAD, URL));
+            remainingExecutor.submit(new ApiPostClient(generator, latencyRecorder, recordSink, remainingLatch,
+                    REQUESTS_PER_THREAD, URL));
         }
 
         remainingLatch.await();
-        scheduler.shutdown();
 
         initialExecutor.shutdown();
         remainingExecutor.shutdown();
+    }
 
-        long endTime = System.currentTimeMillis();
-        long duration = endTime - startTime;
-
-        // Print performance statistics
-        printStats(duration);
-
-        // Calculate and print more detailed statistics
-        calculateAndPrintStatistics(recordList, duration);
-
-        // Write the records to a CSV file
-        CsvWriter csvWriter = new CsvWriter();
-        csvWriter.writeRecordsToCsv(recordList);
-
-        // Plot throughput data
-        throughputPlotWriter.plotThroughput();
+    /**
+     * Waits for the generator thread to end, interrupting it first if the senders stopped early
+     * and left it blocked on a full queue.
+     *
+     * @param generatorThread The thread running the DataGenerator.
+     */
+    private static void stopGenerator(Thread generatorThread) throws InterruptedException {
+        if (generatorThread.isAlive()) {
+            generatorThread.interrupt();
+        }
+        generatorThread.join();
     }
 
     /**
@@ -108,40 +160,33 @@ public class MultiThreadClient {
     }
 
     /**
-     * Calculates and prints detailed statistics for latency including mean, median, p99, min, and max.
+     * Calculates and prints detailed statistics for latency including mean, percentiles up to p99.99,
+     * min, and max. Response time runs from each request's intended send time, service time from its
+     * actual send; they only differ when requests queue in the client (open loop) or are retried.
      *
-     * @param recordList The list of records containing latency information.
+     * @param latencyRecorder The histograms of every request's latency, in microseconds.
      * @param totalTimeMillis The total time taken for the test in milliseconds.
      */
-    private static void calculateAndPrintStatistics(List<Record> recordList, long totalTimeMillis) {
-        DescriptiveStatistics statistics = new DescriptiveStatistics();
-        List<Long> latencies = new ArrayList<>();
-
-        for (Record record : recordList) {
-            long latency = record.getLatency();
-            latencies.add(latency);
-            statistics.addValue(latency);
-        }
-
-        Collections.sort(latencies);
-
-        double meanLatency = statistics.getMean();
-        double medianLatency = statistics.getPercentile(50);
-        long totalRequests = recordList.size();
+    private static void calculateAndPrintStatistics(LatencyRecorder latencyRecorder, long totalTimeMillis) {
+        Histogram responseTimes = latencyRecorder.getResponseTimes();
+        long totalRequests = responseTimes.getTotalCount();
         double throughput = totalRequests / (totalTimeMillis / 1000.0);
-        double p99Latency = statistics.getPercentile(99);
-        double minLatency = statistics.getMin();
-        double maxLatency = statistics.getMax();
 
         System.out.println("---------------------------------------------------");
         System.out.println("Total number of requests: " + totalRequests);
-        
-        System.out.printf("Mean response time: %.2f ms\n", meanLatency);
-        System.out.printf("Median response time: %.2f ms\n", medianLatency);
         System.out.printf("Throughput: %.2f requests/second\n", throughput);
-        System.out.printf("99th percentile response time: %.2f ms\n", p99Latency);
-        System.out.printf("Min response time: %.2f ms\n", minLatency);
-        System.out.printf("Max response time: %.2f ms\n", maxLatency);
+        printLatencies("response time", responseTimes);
+        printLatencies("service time", latencyRecorder.getServiceTimes());
+        System.out.println("Latency log: " + LATENCY_LOG_PATH);
+    }
+
+    private static void printLatencies(String name, Histogram histogram) {
+        System.out.printf("Mean %s: %.2f ms\n", name, histogram.getMean() / 1000.0);
+        System.out.printf("Min %s: %.2f ms\n", name, histogram.getMinValue() / 1000.0);
+        for (double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+            System.out.printf("p%s %s: %.2f ms\n", percentile, name, histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        System.out.printf("Max %s: %.2f ms\n", name, histogram.getMaxValue() / 1000.0);
     }
 }
 
@@ -0,0 +1,85 @@
+import models.LiftEvent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * OpenLoopRunner sends the lift ride events on a fixed schedule, at the rate a LoadProfile gives,
+ * whether or not earlier requests have been answered (open loop).
+ *
+ * A closed-loop client sends its next request only after the previous one returns, so when the server
+ * stalls the client stalls with it and the requests it would have sent are never measured (coordinated
+ * omission). Here every request has an intended send time from the schedule, and its response time is
+ * measured from that time: if the server stalls, requests pile up behind it and their waiting shows up
+ * in the response time. The service time (actual send to response) is recorded alongside it.
+ *
+ * Requests run on virtual threads when the runtime has them (Java 21+), otherwise on a pool of
+ * maxWorkers platform threads, in which case a request waiting for a free worker is also counted in
+ * its response time.
+ */
+class OpenLoopRunner {
+
+    private final LoadProfile profile;
+    private final int maxWorkers;
+    private final String url;
+
+    /**
+     * Constructor
+     *
+     * @param profile Target request rate over time
+     * @param maxWorkers Platform threads to use if virtual threads are not available
+     * @param url Base URL for the Skiers API
+     */
+    OpenLoopRunner(LoadProfile profile, int maxWorkers, String url) {
+        this.profile = profile;
+        this.maxWorkers = maxWorkers;
+        this.url = url;
+    }
+
+    /**
+     * Posts totalRequests events taken from the generator on schedule and returns once every request has finished.
+     *
+     * @param generator Source of the LiftEvent objects to be posted
+     * @param latencyRecorder Histograms to record each request's latency in
+     * @param recordSink Sink for the per-request log, or null
+     * @param totalRequests Number of events to post
+     */
+    void run(DataGenerator generator, LatencyRecorder latencyRecorder, RecordSink recordSink,
+             int totalRequests) throws InterruptedException {
+        ApiPostClient apiPostClient = new ApiPostClient(latencyRecorder, recordSink, url, maxWorkers);
+        ExecutorService executor = newExecutor();
+        System.out.println("Open-loop load: " + profile);
+
+        long startNanos = System.nanoTime();
+        // intended send time of the next request, in nanoseconds since the start
+        double intendedNanos = 0;
+        try {
+            for (int i = 0; i < totalRequests; i++) {
+                long sendAt = startNanos + (long) intendedNanos;
+                long wait;
+                while ((wait = sendAt - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                LiftEvent event = generator.take();
+                // behind schedule, the request still goes out at once and its response time starts
+                // from when it should have been sent, so the backlog is measured, not skipped
+                executor.execute(() -> apiPostClient.postEvent(event, sendAt));
+                intendedNanos += 1_000_000_000.0 / profile.rateAt(intendedNanos / 1_000_000_000.0);
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        try {
+            return VirtualThreadRunner.newVirtualThreadPerTaskExecutor();
+        } catch (IllegalStateException e) {
+            System.out.println("Virtual threads unavailable, sending with " + maxWorkers + " platform threads");
+            return Executors.newFixedThreadPool(maxWorkers);
+        }
+    }
+}
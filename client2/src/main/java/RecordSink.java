@@ -0,0 +1,256 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * RecordSink streams the per-request log to a file while the test runs, so heap use stays flat
+ * however many requests are sent.
+ *
+ * Request threads claim a slot in a fixed-size ring buffer, fill in its fields and publish it; no lock
+ * is taken. A single writer thread encodes published slots into a 1 MiB buffer and writes it to a
+ * FileChannel whenever it fills, so the file trails the run by at most one buffer. If the writer falls
+ * a whole ring behind, request threads wait for it rather than dropping records.
+ *
+ * Formats:
+ * CSV         - startTime,requestType,latency,responseTime,statusCode, times in ms, as before.
+ * CSV_GZIP    - the same, gzip compressed.
+ * BINARY      - the magic "LRB1", then 18 bytes per request, big-endian: startTime (epoch ms, long),
+ *               latency (us, int), responseTime (us, int), statusCode (short). Every request is a POST.
+ */
+public class RecordSink implements AutoCloseable {
+
+    public enum Format {
+        CSV(".csv"), CSV_GZIP(".csv.gz"), BINARY(".bin");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final int RING_SIZE = 1 << 16;
+    private static final int MASK = RING_SIZE - 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+    // longest encoded CSV line, with room to spare
+    private static final int MAX_RECORD_BYTES = 128;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final byte[] BINARY_MAGIC = "LRB1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CSV_HEADER =
+            "startTime,requestType,latency,responseTime,statusCode\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POST = ",POST,".getBytes(StandardCharsets.US_ASCII);
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private final Format format;
+    private final String path;
+
+    // ring buffer, one array per field
+    private final long[] startTimes = new long[RING_SIZE];
+    private final long[] serviceNanos = new long[RING_SIZE];
+    private final long[] responseNanos = new long[RING_SIZE];
+    private final int[] statusCodes = new int[RING_SIZE];
+    // sequence number last published into each slot
+    private final AtomicLongArray published = new AtomicLongArray(RING_SIZE);
+    // next sequence number to hand out
+    private final AtomicLong claimed = new AtomicLong();
+    // next sequence number the writer will read; everything before it may be overwritten
+    private volatile long consumed;
+    private volatile boolean closing;
+
+    private final FileChannel channel;
+    private final OutputStream gzip;
+    private final ByteBuffer buffer;
+    private final Thread writer;
+    private IOException failure;
+
+    // writer thread only: the formatted second of the previous CSV line
+    private long cachedSecond = Long.MIN_VALUE;
+    private byte[] cachedTime;
+
+    /**
+     * Constructor, creates the file and starts the writer thread.
+     *
+     * @param basePath Path of the log file without its extension, which the format adds
+     * @param format Encoding of the log
+     * @throws IOException If the file can not be created
+     */
+    public RecordSink(String basePath, Format format) throws IOException {
+        this.format = format;
+        this.path = basePath + format.getExtension();
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        for (int i = 0; i < RING_SIZE; i++) {
+            published.set(i, -1);
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (format == Format.CSV_GZIP) {
+            // the deflater takes a byte array, so there is no point in a direct buffer
+            this.gzip = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+            this.buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        } else {
+            this.gzip = null;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        }
+        buffer.put(format == Format.BINARY ? BINARY_MAGIC : CSV_HEADER);
+
+        this.writer = new Thread(this::runWriter, "record-sink");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Hands one request's record to the writer. Safe to call from any number of threads.
+     *
+     * @param startTime When the request was sent, epoch milliseconds
+     * @param serviceNanos Time from sending the request to its response
+     * @param responseNanos Time from the request's intended send time to its response
+     * @param statusCode HTTP status of the response
+     */
+    public void add(long startTime, long serviceNanos, long responseNanos, int statusCode) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= RING_SIZE) {
+            // the writer is a full ring behind; wait for it to free this slot
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+        int slot = (int) sequence & MASK;
+        startTimes[slot] = startTime;
+        this.serviceNanos[slot] = serviceNanos;
+        this.responseNanos[slot] = responseNanos;
+        statusCodes[slot] = statusCode;
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * @return Path of the log file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Writes out every record added so far and closes the file. Call once all requests have finished.
+     *
+     * @throws IOException If writing the log failed at any point
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing " + path, e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void runWriter() {
+        try {
+            long next = 0;
+            while (true) {
+                boolean finishing = closing;
+                int slot = (int) next & MASK;
+                if (published.get(slot) == next) {
+                    if (buffer.remaining() < MAX_RECORD_BYTES) {
+                        flush();
+                    }
+                    encode(slot);
+                    consumed = ++next;
+                } else if (finishing && next == claimed.get()) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+            flush();
+            if (gzip != null) {
+                gzip.close();
+            } else {
+                channel.close();
+            }
+        } catch (IOException e) {
+            failure = e;
+            // keep the ring moving so request threads never block on a dead writer
+            while (!closing || consumed != claimed.get()) {
+                consumed = claimed.get();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        if (gzip != null) {
+            gzip.write(buffer.array(), 0, buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    private void encode(int slot) {
+        long startTime = startTimes[slot];
+        if (format == Format.BINARY) {
+            buffer.putLong(startTime);
+            buffer.putInt((int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(serviceNanos[slot])));
+            buffer.putInt((int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(responseNanos[slot])));
+            buffer.putShort((short) statusCodes[slot]);
+            return;
+        }
+        // the timestamp only has second resolution, so format it once per second
+        long second = Math.floorDiv(startTime, 1000);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = formatter.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+        }
+        buffer.put(cachedTime);
+        buffer.put(POST);
+        putDecimal(TimeUnit.NANOSECONDS.toMillis(serviceNanos[slot]));
+        buffer.put((byte) ',');
+        putDecimal(TimeUnit.NANOSECONDS.toMillis(responseNanos[slot]));
+        buffer.put((byte) ',');
+        putDecimal(statusCodes[slot]);
+        buffer.put((byte) '\n');
+    }
+
+    private void putDecimal(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import models.LiftEvent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VirtualThreadRunner sends the lift ride events with one virtual thread per in-flight request.
+ * Concurrency is set by a Semaphore of maxInFlight permits instead of a thread count, so one box can
+ * keep 10k+ requests in flight without 10k OS threads.
+ *
+ * Virtual threads need a Java 21+ runtime. This module still compiles for Java 17, so the executor
+ * is looked up reflectively. At high concurrency, also raise the open file limit (ulimit -n) above
+ * maxInFlight, since every in-flight request holds its own socket.
+ */
+class VirtualThreadRunner {
+
+    private final int maxInFlight;
+    private final String url;
+
+    /**
+     * Constructor
+     *
+     * @param maxInFlight Maximum number of requests in flight at once
+     * @param url Base URL for the Skiers API
+     */
+    VirtualThreadRunner(int maxInFlight, String url) {
+        this.maxInFlight = maxInFlight;
+        this.url = url;
+    }
+
+    /**
+     * Posts totalRequests events taken from the generator and returns once every request has finished.
+     *
+     * @param generator Source of the LiftEvent objects to be posted
+     * @param latencyRecorder Histograms to record each request's latency in
+     * @param recordSink Sink for the per-request log, or null
+     * @param totalRequests Number of events to post
+     */
+    void run(DataGenerator generator, LatencyRecorder latencyRecorder, RecordSink recordSink,
+             int totalRequests) throws InterruptedException {
+        ApiPostClient apiPostClient = new ApiPostClient(latencyRecorder, recordSink, url, maxInFlight);
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i < totalRequests; i++) {
+                LiftEvent event = generator.take();
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        apiPostClient.postEvent(event);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        }
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual-thread mode needs Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous, rate-limited logging on top of slf4j for the request and consume hot paths.
+ *
+ * Each call site is a static Site holding its logger, level, message pattern and rate limit:
+ *
+ *   private static final AsyncLog.Site QUEUED =
+ *           AsyncLog.site(MessageHandler.class, AsyncLog.Level.DEBUG, "Queued Redis write: {}");
+ *   QUEUED.log(liftID);
+ *
+ * If the level is disabled the call returns after one field read, with no allocation (the
+ * primitive overloads avoid boxing). Otherwise the arguments are copied into a preallocated slot
+ * of a lock-free ring buffer and a single background thread formats and writes them through slf4j,
+ * so callers never take the console lock. A site logs at most its rate limit per second; the
+ * surplus is counted and reported with the next event that gets through. When the buffer is full
+ * events are dropped rather than blocking the caller, and the drop count is logged.
+ *
+ * Object arguments are formatted later on the appender thread, so pass immutable values
+ * (Strings, boxed numbers, exceptions).
+ */
+public final class AsyncLog {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int CAPACITY = Integer.highestOneBit(SharedConfig.LOG_BUFFER_SIZE);
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Slot[] SLOTS = new Slot[CAPACITY];
+    private static final AtomicLong TAIL = new AtomicLong();
+    // only touched by the appender thread
+    private static long head;
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncLog.class);
+    private static volatile boolean running = true;
+    private static final Thread APPENDER;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            SLOTS[i] = new Slot(i);
+        }
+        APPENDER = new Thread(AsyncLog::runAppender, "async-log");
+        APPENDER.setDaemon(true);
+        APPENDER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::shutdown, "async-log-flush"));
+    }
+
+    private AsyncLog() {
+    }
+
+    public static Site site(Class<?> owner, Level level, String pattern) {
+        return site(owner, level, pattern, SharedConfig.LOG_RATE_PER_SITE);
+    }
+
+    public static Site site(Class<?> owner, Level level, String pattern, int maxPerSecond) {
+        return new Site(LoggerFactory.getLogger(owner), level, pattern, maxPerSecond);
+    }
+
+    /**
+     * One log statement: where, at what level, with which message pattern and rate limit.
+     */
+    public static final class Site {
+        private final Logger logger;
+        private final Level level;
+        private final String pattern;
+        private final boolean enabled;
+        private final int maxPerSecond;
+        private final AtomicLong window = new AtomicLong();
+        private final AtomicInteger windowCount = new AtomicInteger();
+        private final LongAdder suppressed = new LongAdder();
+
+        private Site(Logger logger, Level level, String pattern, int maxPerSecond) {
+            this.logger = logger;
+            this.level = level;
+            this.pattern = pattern;
+            this.maxPerSecond = maxPerSecond;
+            switch (level) {
+                case DEBUG: this.enabled = logger.isDebugEnabled(); break;
+                case INFO: this.enabled = logger.isInfoEnabled(); break;
+                case WARN: this.enabled = logger.isWarnEnabled(); break;
+                default: this.enabled = logger.isErrorEnabled(); break;
+            }
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void log() {
+            if (enabled && admit()) {
+                publish(this, 0, 0L, 0L, null, null);
+            }
+        }
+
+        public void log(long arg) {
+            if (enabled && admit()) {
+                publish(this, 1, arg, 0L, null, null);
+            }
+        }
+
+        public void log(long arg1, long arg2) {
+            if (enabled && admit()) {
+                publish(this, 2, arg1, arg2, null, null);
+            }
+        }
+
+        public void log(Object arg) {
+            if (enabled && admit()) {
+                publish(this, 3, 0L, 0L, arg, null);
+            }
+        }
+
+        public void log(Object arg1, Object arg2) {
+            if (enabled && admit()) {
+                publish(this, 4, 0L, 0L, arg1, arg2);
+            }
+        }
+
+        public void log(long arg1, Object arg2) {
+            if (enabled && admit()) {
+                publish(this, 5, arg1, 0L, arg2, null);
+            }
+        }
+
+        /**
+         * Fixed one-second windows: the first maxPerSecond events of each second get through.
+         */
+        private boolean admit() {
+            long second = System.nanoTime() / 1_000_000_000L;
+            long current = window.get();
+            if (second != current && window.compareAndSet(current, second)) {
+                windowCount.set(0);
+            }
+            if (windowCount.incrementAndGet() <= maxPerSecond) {
+                return true;
+            }
+            suppressed.increment();
+            return false;
+        }
+
+        private void write(Object[] args) {
+            switch (level) {
+                case DEBUG: logger.debug(pattern, args); break;
+                case INFO: logger.info(pattern, args); break;
+                case WARN: logger.warn(pattern, args); break;
+                default: logger.error(pattern, args); break;
+            }
+            long skipped = suppressed.sumThenReset();
+            if (skipped > 0) {
+                String note = "{} similar messages suppressed: {}";
+                switch (level) {
+                    case DEBUG: logger.debug(note, skipped, pattern); break;
+                    case INFO: logger.info(note, skipped, pattern); break;
+                    case WARN: logger.warn(note, skipped, pattern); break;
+                    default: logger.error(note, skipped, pattern); break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A preallocated ring-buffer entry. The sequence number says whose turn it is:
+     * equal to the claim position when free, claim position + 1 once written.
+     */
+    private static final class Slot {
+        private volatile long sequence;
+        private Site site;
+        private int kind;
+        private long long1;
+        private long long2;
+        private Object object1;
+        private Object object2;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Multi-producer enqueue: claim a position with a CAS on the tail, fill the slot, then publish it
+     * by advancing its sequence. Drops the event if the appender is a full lap behind.
+     */
+    private static void publish(Site site, int kind, long long1, long long2, Object object1, Object object2) {
+        long position = TAIL.get();
+        Slot slot;
+        while (true) {
+            slot = SLOTS[(int) position & MASK];
+            long lag = slot.sequence - position;
+            if (lag == 0) {
+                if (TAIL.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = TAIL.get();
+            } else if (lag < 0) {
+                DROPPED.increment();
+                return;
+            } else {
+                position = TAIL.get();
+            }
+        }
+        slot.site = site;
+        slot.kind = kind;
+        slot.long1 = long1;
+        slot.long2 = long2;
+        slot.object1 = object1;
+        slot.object2 = object2;
+        slot.sequence = position + 1;
+    }
+
+    private static void runAppender() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    private static int drain() {
+        int written = 0;
+        while (true) {
+            Slot slot = SLOTS[(int) head & MASK];
+            if (slot.sequence != head + 1) {
+                break;
+            }
+            Site site = slot.site;
+            Object[] args = arguments(slot);
+            slot.site = null;
+            slot.object1 = null;
+            slot.object2 = null;
+            slot.sequence = head + CAPACITY;
+            head++;
+            try {
+                site.write(args);
+            } catch (RuntimeException e) {
+                // never let a bad toString() kill the appender
+            }
+            written++;
+        }
+        long dropped = DROPPED.sumThenReset();
+        if (dropped > 0) {
+            LOG.warn("Log buffer full, dropped {} events", dropped);
+        }
+        return written;
+    }
+
+    private static Object[] arguments(Slot slot) {
+        switch (slot.kind) {
+            case 1: return new Object[]{slot.long1};
+            case 2: return new Object[]{slot.long1, slot.long2};
+            case 3: return new Object[]{slot.object1};
+            case 4: return new Object[]{slot.object1, slot.object2};
+            case 5: return new Object[]{slot.long1, slot.object1};
+            default: return new Object[0];
+        }
+    }
+
+    private static void shutdown() {
+        running = false;
+        LockSupport.unpark(APPENDER);
+        try {
+            APPENDER.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package common;
+
+import redis.clients.jedis.util.Hashing;
+import redis.clients.jedis.util.MurmurHash;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * MurmurHash over a key's hash tag, for client-side sharding: as in Redis Cluster, only the part
+ * between the first "{" and the next "}" is hashed when it is not empty, otherwise the whole key.
+ *
+ * JedisSharding applies its key tag pattern to String keys only, and its pipelines not at all, so
+ * with plain MurmurHash the binary RedisKeys were hashed whole and one ride's keys landed on
+ * different shards. Extracting the tag in the hash itself covers every command path. Untagged
+ * strings, such as the shard names the ring is built from, hash exactly as with Hashing.MURMUR_HASH.
+ * Jedis deprecates its client-side sharding as a whole, Hashing and MurmurHash included.
+ */
+@SuppressWarnings("deprecation")
+final class KeyTagHashing implements Hashing {
+
+    static final KeyTagHashing INSTANCE = new KeyTagHashing();
+
+    // the seed of Hashing.MURMUR_HASH
+    private static final int SEED = 0x1234ABCD;
+
+    private KeyTagHashing() {
+    }
+
+    @Override
+    public long hash(String key) {
+        return hash(SafeEncoder.encode(key));
+    }
+
+    @Override
+    public long hash(byte[] key) {
+        int open = indexOf(key, (byte) '{', 0);
+        if (open >= 0) {
+            int close = indexOf(key, (byte) '}', open + 1);
+            if (close > open + 1) {
+                return MurmurHash.hash64A(key, open + 1, close - open - 1, SEED);
+            }
+        }
+        return MurmurHash.hash64A(key, SEED);
+    }
+
+    private static int indexOf(byte[] key, byte value, int from) {
+        for (int i = from; i < key.length; i++) {
+            if (key[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
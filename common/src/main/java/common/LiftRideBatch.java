@@ -0,0 +1,64 @@
+package common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Framing for batch messages that carry several lift rides in one AMQP message.
+ * Layout: [int count] followed by count frames of [int length][payload bytes].
+ * The payloads are the same bytes a single-ride message would carry.
+ */
+public class LiftRideBatch {
+    // the element format of a batch follows the single-message format it was built from
+    public static final String JSON_CONTENT_TYPE = "application/vnd.skiresort.batch+json";
+    public static final String BINARY_CONTENT_TYPE = "application/vnd.skiresort.batch+binary";
+
+    public static byte[] encode(List<byte[]> payloads) {
+        int size = Integer.BYTES;
+        for (byte[] payload : payloads) {
+            size += Integer.BYTES + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(payloads.size());
+        for (byte[] payload : payloads) {
+            buffer.putInt(payload.length);
+            buffer.put(payload);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Split a batch into its payloads.
+     *
+     * @throws IllegalArgumentException if the body is truncated or is not a well-formed batch
+     */
+    public static List<byte[]> decode(byte[] body) {
+        if (body.length < Integer.BYTES) {
+            throw new IllegalArgumentException("Truncated batch: " + body.length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int count = buffer.getInt();
+        // every frame takes at least its length field, so a corrupt count cannot size a huge list
+        if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("Invalid batch frame count: " + count);
+        }
+        List<byte[]> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new IllegalArgumentException("Truncated batch frame " + i + " of " + count);
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid batch frame length: " + length);
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            payloads.add(payload);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException(buffer.remaining() + " bytes after the last batch frame");
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,55 @@
+package common;
+
+import common.beans.LiftRide;
+import common.beans.LiftRideMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-layout binary encoding of a LiftRideMessage.
+ * Layout (big-endian, 25 bytes): [byte version][int resortID][int seasonID][int dayID][int skierID]
+ * [int time][int liftID]. Messages in this format carry CONTENT_TYPE so JSON and binary
+ * messages can share the queue.
+ */
+public class LiftRideCodec {
+    public static final String CONTENT_TYPE = "application/vnd.skiresort.liftride";
+    public static final byte VERSION = 1;
+    public static final int ENCODED_SIZE = 1 + 6 * Integer.BYTES;
+
+    /**
+     * Write the message at the buffer's position; the buffer needs ENCODED_SIZE bytes remaining.
+     */
+    public static void encode(LiftRideMessage message, ByteBuffer buffer) {
+        buffer.put(VERSION);
+        buffer.putInt(message.getResortID());
+        buffer.putInt(message.getSeasonID());
+        buffer.putInt(message.getDayID());
+        buffer.putInt(message.getSkierID());
+        buffer.putInt(message.getLiftRide().getTime());
+        buffer.putInt(message.getLiftRide().getLiftID());
+    }
+
+    public static byte[] encode(LiftRideMessage message) {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_SIZE);
+        encode(message, buffer);
+        return buffer.array();
+    }
+
+    public static LiftRideMessage decode(byte[] body) {
+        if (body.length != ENCODED_SIZE) {
+            throw new IllegalArgumentException("Invalid lift ride message length: " + body.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported lift ride message version: " + version);
+        }
+        int resortID = buffer.getInt();
+        int seasonID = buffer.getInt();
+        int dayID = buffer.getInt();
+        int skierID = buffer.getInt();
+        int time = buffer.getInt();
+        int liftID = buffer.getInt();
+        return new LiftRideMessage(resortID, seasonID, dayID, skierID, new LiftRide(time, liftID));
+    }
+}
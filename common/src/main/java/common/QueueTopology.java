@@ -0,0 +1,61 @@
+package common;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Declares the lift ride queue (and its exchange, if one is configured) from SharedConfig.
+ * Declaration happens once at startup and again whenever the connection recovers,
+ * never on the per-message path.
+ */
+public class QueueTopology {
+
+    private static final AsyncLog.Site REDECLARE_FAILED = AsyncLog.site(QueueTopology.class, AsyncLog.Level.ERROR,
+            "Failed to re-declare queue topology after recovery: {}");
+
+    // where publishers send lift rides: the default exchange routes straight to the queue by name
+    public static final String EXCHANGE = SharedConfig.EXCHANGE_NAME;
+    public static final String ROUTING_KEY =
+            SharedConfig.EXCHANGE_NAME.isEmpty() ? SharedConfig.QUEUE_NAME : SharedConfig.ROUTING_KEY;
+
+    public static void declare(Channel channel) throws IOException {
+        if (!SharedConfig.EXCHANGE_NAME.isEmpty()) {
+            channel.exchangeDeclare(SharedConfig.EXCHANGE_NAME, SharedConfig.EXCHANGE_TYPE, SharedConfig.QUEUE_DURABLE);
+        }
+        channel.queueDeclare(SharedConfig.QUEUE_NAME, SharedConfig.QUEUE_DURABLE, SharedConfig.QUEUE_EXCLUSIVE,
+                SharedConfig.QUEUE_AUTO_DELETE, SharedConfig.QUEUE_ARGUMENTS);
+        if (!SharedConfig.EXCHANGE_NAME.isEmpty()) {
+            channel.queueBind(SharedConfig.QUEUE_NAME, SharedConfig.EXCHANGE_NAME, SharedConfig.ROUTING_KEY);
+        }
+    }
+
+    /**
+     * Declare the topology on a short-lived channel and re-declare it after every connection recovery.
+     */
+    public static void declare(Connection connection) throws IOException, TimeoutException {
+        try (Channel channel = connection.createChannel()) {
+            declare(channel);
+        }
+        if (connection instanceof Recoverable) {
+            ((Recoverable) connection).addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void handleRecovery(Recoverable recoverable) {
+                    try (Channel channel = connection.createChannel()) {
+                        declare(channel);
+                    } catch (IOException | TimeoutException e) {
+                        REDECLARE_FAILED.log(e.getMessage());
+                    }
+                }
+
+                @Override
+                public void handleRecoveryStarted(Recoverable recoverable) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package common;
+
+import lombok.Getter;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.JedisSharding;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.providers.ShardedConnectionProvider;
+import redis.clients.jedis.util.Pool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared Redis clients, chosen by SharedConfig.REDIS_MODE:
+ *   standalone - a pooled client for REDIS_HOST:REDIS_PORT
+ *   sharded    - client-side consistent hashing (MurmurHash ring, see KeyTagHashing) over the REDIS_NODES
+ *   cluster    - Redis Cluster, slots discovered from the REDIS_NODES
+ *
+ * Outside standalone mode RedisKeys puts a hash tag in every key, so one ride's keys map to one shard.
+ * getClient().pipelined() queues commands per shard and sends one batch to each node on sync().
+ *
+ * This is the one Redis client of each process. Its pools are sized and timed out from SharedConfig
+ * (REDIS_MAX_TOTAL, REDIS_MAX_IDLE, REDIS_MIN_IDLE, REDIS_MAX_WAIT_MS, REDIS_*_TIMEOUT_MS), and
+ * getPools() exposes them for gauges and tuning.
+ */
+public class RedisClient {
+    @Getter
+    private static final UnifiedJedis client;
+    // REDIS_HOST:REDIS_PORT, for the near-cache invalidation channel; the same client in standalone mode
+    @Getter
+    private static final UnifiedJedis pubSubClient;
+    // the pool and connection settings of every node, for other clients of this process such as read replicas
+    @Getter
+    private static final ConnectionPoolConfig poolConfig;
+    @Getter
+    private static final JedisClientConfig clientConfig;
+    // the shard pools, set by createClient in sharded mode
+    private static Map<String, ? extends Pool<Connection>> shardedPools;
+
+    static {
+        poolConfig = new ConnectionPoolConfig();
+        poolConfig.setMaxTotal(SharedConfig.REDIS_MAX_TOTAL);
+        poolConfig.setMaxIdle(SharedConfig.REDIS_MAX_IDLE);
+        poolConfig.setMinIdle(SharedConfig.REDIS_MIN_IDLE);
+        poolConfig.setMaxWait(Duration.ofMillis(SharedConfig.REDIS_MAX_WAIT_MS));
+        clientConfig = DefaultJedisClientConfig.builder()
+                .connectionTimeoutMillis(SharedConfig.REDIS_CONNECT_TIMEOUT_MS)
+                .socketTimeoutMillis(SharedConfig.REDIS_SOCKET_TIMEOUT_MS)
+                .build();
+
+        // Initialize the client using SharedConfig values
+        client = createClient(poolConfig, clientConfig);
+        pubSubClient = isStandalone()
+                ? client
+                : new JedisPooled(new HostAndPort(SharedConfig.REDIS_HOST, SharedConfig.REDIS_PORT), clientConfig);
+    }
+
+    public static boolean isStandalone() {
+        return "standalone".equals(SharedConfig.REDIS_MODE);
+    }
+
+    /**
+     * The connection pool of every node, keyed by "host:port": one in standalone mode, one per shard
+     * or cluster node otherwise.
+     */
+    public static Map<String, Pool<Connection>> getPools() {
+        if (client instanceof JedisPooled) {
+            return Map.of(SharedConfig.REDIS_HOST + ":" + SharedConfig.REDIS_PORT, ((JedisPooled) client).getPool());
+        }
+        if (client instanceof JedisCluster) {
+            return new LinkedHashMap<>(((JedisCluster) client).getClusterNodes());
+        }
+        return new LinkedHashMap<>(shardedPools);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static UnifiedJedis createClient(ConnectionPoolConfig poolConfig, JedisClientConfig clientConfig) {
+        switch (SharedConfig.REDIS_MODE) {
+            case "standalone":
+                return new JedisPooled(new HostAndPort(SharedConfig.REDIS_HOST, SharedConfig.REDIS_PORT), clientConfig,
+                        poolConfig);
+            case "sharded":
+                // KeyTagHashing makes only the "{...}" part of a key pick the shard, binary keys and
+                // pipelines included; the tag pattern alone only covers String keys outside pipelines
+                ShardedConnectionProvider provider =
+                        new ShardedConnectionProvider(nodes(), clientConfig, poolConfig, KeyTagHashing.INSTANCE);
+                shardedPools = provider.getConnectionMap();
+                return new JedisSharding(provider, JedisSharding.DEFAULT_KEY_TAG_PATTERN);
+            case "cluster":
+                // the pool settings apply per cluster node
+                return new JedisCluster(new LinkedHashSet<>(nodes()), clientConfig, poolConfig);
+            default:
+                throw new IllegalStateException("Unknown REDIS_MODE: " + SharedConfig.REDIS_MODE);
+        }
+    }
+
+    private static List<HostAndPort> nodes() {
+        List<HostAndPort> nodes = new ArrayList<>(SharedConfig.REDIS_NODES.size());
+        for (String node : SharedConfig.REDIS_NODES) {
+            nodes.add(HostAndPort.from(node));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,310 @@
+package common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Builds the Redis keys, fields and members shared by the Server and the Consumer as raw bytes.
+ *
+ * Keys are assembled from pre-encoded pieces: the constant segments, cached decimal encodings of
+ * small numbers (IDs, days, seasons) and, per resort/season, cached prefixes. The resort-wide keys
+ * (unique-skier set/HLL, leaderboard) are cached whole; a per-skier key is its cached prefix plus
+ * the skier segment, one exact-length array copy with no String building or UTF-8 encoding.
+ * There is no shared scratch buffer to write keys into: a pipeline keeps every key array it is
+ * given until sync(), so each per-skier key has to be its own array.
+ * All returned arrays are shared and must not be modified by callers.
+ *
+ * Key layout:
+ *   resort:{resortID}:season:{seasonID}:day:{dayID}:skiers          set of skier IDs
+ *   resort:{resortID}:season:{seasonID}:day:{dayID}:skiers:hll      HyperLogLog of skier IDs
+ *   resort:{resortID}:season:{seasonID}:day:{dayID}:skier:{skierID} hash, field "vertical"
+ *   resort:{resortID}:skier:{skierID}:vertical                      hash, fields {seasonID} and "all"
+ *   resort:{resortID}:season:{seasonID}:leaderboard                 sorted set, skierID scored by vertical
+ *   resort:{resortID}:season:{seasonID}:day:{dayID}:lifts:{skierID} set of lift IDs ridden that day
+ *   resort:{resortID}:skier:{skierID}:season:{seasonID}:days        set of day IDs skied that season
+ *
+ * Outside standalone Redis (SharedConfig.REDIS_MODE) one ID in each key is wrapped in a hash tag, e.g.
+ * "resort:{7}:season:2024:leaderboard", so only that ID picks the shard (see KeyTagHashing) or
+ * cluster slot. With REDIS_SHARD_BY "resort" every key tags the resort ID; with "skier" the per-skier
+ * keys tag the skier ID and the resort-wide keys (unique-skier set/HLL, leaderboard) tag the resort ID.
+ */
+public final class RedisKeys {
+
+    public static final byte[] VERTICAL_FIELD = bytes("vertical");
+    public static final byte[] ALL_FIELD = bytes("all");
+
+    private static final byte[] RESORT = bytes("resort:");
+    private static final byte[] SEASON = bytes(":season:");
+    private static final byte[] DAY = bytes(":day:");
+    private static final byte[] SKIER = bytes(":skier:");
+    private static final byte[] SKIERS_SUFFIX = bytes(":skiers");
+    private static final byte[] SKIERS_HLL_SUFFIX = bytes(":skiers:hll");
+    private static final byte[] VERTICAL_SUFFIX = bytes(":vertical");
+    private static final byte[] LEADERBOARD_SUFFIX = bytes(":leaderboard");
+    private static final byte[] LIFTS = bytes(":lifts:");
+    private static final byte[] DAYS_SUFFIX = bytes(":days");
+
+    // covers skier IDs, days, seasons and resorts in the load tests
+    private static final int NUMBER_CACHE_SIZE = 1 << 17;
+    // day IDs 0..366 get their keys cached
+    private static final int DAYS = 367;
+    // stop caching past this many distinct resort/season pairs
+    private static final int SEASON_CACHE_LIMIT = 1_024;
+
+    private static final AtomicReferenceArray<byte[]> NUMBERS = new AtomicReferenceArray<>(NUMBER_CACHE_SIZE);
+    private static final Layout LAYOUT = new Layout(SharedConfig.REDIS_MODE, SharedConfig.REDIS_SHARD_BY);
+
+    private RedisKeys() {
+    }
+
+    /**
+     * resort:{resortID}:season:{seasonID}:day:{dayID}:skiers
+     */
+    public static byte[] daySkiers(int resortID, int seasonID, int dayID) {
+        return LAYOUT.daySkiers(resortID, seasonID, dayID);
+    }
+
+    /**
+     * resort:{resortID}:season:{seasonID}:day:{dayID}:skiers:hll
+     */
+    public static byte[] daySkiersHll(int resortID, int seasonID, int dayID) {
+        return LAYOUT.daySkiersHll(resortID, seasonID, dayID);
+    }
+
+    /**
+     * resort:{resortID}:season:{seasonID}:day:{dayID}:skier:{skierID}
+     */
+    public static byte[] skierDay(int resortID, int seasonID, int dayID, int skierID) {
+        return LAYOUT.skierDay(resortID, seasonID, dayID, skierID);
+    }
+
+    /**
+     * resort:{resortID}:skier:{skierID}:vertical
+     */
+    public static byte[] skierVertical(int resortID, int skierID) {
+        return LAYOUT.skierVertical(resortID, skierID);
+    }
+
+    /**
+     * resort:{resortID}:season:{seasonID}:leaderboard
+     */
+    public static byte[] leaderboard(int resortID, int seasonID) {
+        return LAYOUT.leaderboard(resortID, seasonID);
+    }
+
+    /**
+     * resort:{resortID}:season:{seasonID}:day:{dayID}:lifts:{skierID}
+     */
+    public static byte[] skierLifts(int resortID, int seasonID, int dayID, int skierID) {
+        return LAYOUT.skierLifts(resortID, seasonID, dayID, skierID);
+    }
+
+    /**
+     * resort:{resortID}:skier:{skierID}:season:{seasonID}:days
+     */
+    public static byte[] skierDays(int resortID, int skierID, int seasonID) {
+        return LAYOUT.skierDays(resortID, skierID, seasonID);
+    }
+
+    /**
+     * Decimal encoding of a number, used for set members, hash fields and key segments.
+     */
+    public static byte[] number(int value) {
+        if (value < 0 || value >= NUMBER_CACHE_SIZE) {
+            return bytes(Integer.toString(value));
+        }
+        byte[] encoded = NUMBERS.get(value);
+        if (encoded == null) {
+            encoded = bytes(Integer.toString(value));
+            NUMBERS.set(value, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * The keys of one REDIS_MODE and REDIS_SHARD_BY, with their caches. RedisKeys serves the configured
+     * one; tests build the others.
+     */
+    static final class Layout {
+        private final boolean tagged;
+        private final boolean tagSkier;
+        // "{value}" hash tags, only filled outside standalone mode
+        private final AtomicReferenceArray<byte[]> tags;
+        private final Map<Long, Season> seasons = new ConcurrentHashMap<>();
+        // "resort:{resortID}:skier:"
+        private final Map<Integer, byte[]> skierPrefixes = new ConcurrentHashMap<>();
+
+        Layout(String mode, String shardBy) {
+            this.tagged = !"standalone".equals(mode);
+            this.tagSkier = tagged && "skier".equals(shardBy);
+            this.tags = new AtomicReferenceArray<>(tagged ? NUMBER_CACHE_SIZE : 0);
+        }
+
+        byte[] daySkiers(int resortID, int seasonID, int dayID) {
+            Season season = season(resortID, seasonID);
+            return season.dayKey(season.daySkiers, dayID, season.resortDayPrefix, SKIERS_SUFFIX);
+        }
+
+        byte[] daySkiersHll(int resortID, int seasonID, int dayID) {
+            Season season = season(resortID, seasonID);
+            return season.dayKey(season.daySkiersHll, dayID, season.resortDayPrefix, SKIERS_HLL_SUFFIX);
+        }
+
+        byte[] skierDay(int resortID, int seasonID, int dayID, int skierID) {
+            Season season = season(resortID, seasonID);
+            return concat(season.dayKey(season.skierDayPrefixes, dayID, season.dayPrefix, SKIER),
+                    skierSegment(skierID));
+        }
+
+        byte[] skierVertical(int resortID, int skierID) {
+            return concat(skierPrefix(resortID), skierSegment(skierID), VERTICAL_SUFFIX);
+        }
+
+        byte[] leaderboard(int resortID, int seasonID) {
+            return season(resortID, seasonID).leaderboard;
+        }
+
+        byte[] skierLifts(int resortID, int seasonID, int dayID, int skierID) {
+            Season season = season(resortID, seasonID);
+            return concat(season.dayKey(season.liftsPrefixes, dayID, season.dayPrefix, LIFTS), skierSegment(skierID));
+        }
+
+        byte[] skierDays(int resortID, int skierID, int seasonID) {
+            return concat(skierPrefix(resortID), skierSegment(skierID), season(resortID, seasonID).daysSuffix);
+        }
+
+        /**
+         * The resort ID segment: tagged when sharding by resort, or for resort-wide keys when sharding by skier.
+         */
+        private byte[] resortSegment(int resortID, boolean resortWide) {
+            return tagged && (resortWide || !tagSkier) ? tag(resortID) : number(resortID);
+        }
+
+        private byte[] skierSegment(int skierID) {
+            return tagSkier ? tag(skierID) : number(skierID);
+        }
+
+        private byte[] tag(int value) {
+            if (value < 0 || value >= NUMBER_CACHE_SIZE) {
+                return bytes("{" + value + "}");
+            }
+            byte[] encoded = tags.get(value);
+            if (encoded == null) {
+                encoded = bytes("{" + value + "}");
+                tags.set(value, encoded);
+            }
+            return encoded;
+        }
+
+        private Season season(int resortID, int seasonID) {
+            Long packed = ((long) resortID << 32) | (seasonID & 0xFFFFFFFFL);
+            Season season = seasons.get(packed);
+            if (season == null) {
+                boolean cached = seasons.size() < SEASON_CACHE_LIMIT;
+                season = new Season(resortID, seasonID, cached);
+                if (cached) {
+                    Season raced = seasons.putIfAbsent(packed, season);
+                    if (raced != null) {
+                        season = raced;
+                    }
+                }
+            }
+            return season;
+        }
+
+        private byte[] skierPrefix(int resortID) {
+            byte[] prefix = skierPrefixes.get(resortID);
+            if (prefix == null) {
+                prefix = concat(RESORT, resortSegment(resortID, false), SKIER);
+                if (skierPrefixes.size() < SEASON_CACHE_LIMIT) {
+                    skierPrefixes.put(resortID, prefix);
+                }
+            }
+            return prefix;
+        }
+
+        /**
+         * The pieces of one resort/season's keys. The resort-wide keys are kept whole, the per-skier keys
+         * as their prefix up to the skier segment, per day.
+         */
+        private final class Season {
+            // "resort:{resortID}:season:{seasonID}:day:", and the same with the resort tagged as in resort-wide keys
+            private final byte[] dayPrefix;
+            private final byte[] resortDayPrefix;
+            private final byte[] leaderboard;
+            // ":season:{seasonID}:days"
+            private final byte[] daysSuffix;
+            // indexed by day ID, null past SEASON_CACHE_LIMIT
+            private final AtomicReferenceArray<byte[]> daySkiers;
+            private final AtomicReferenceArray<byte[]> daySkiersHll;
+            private final AtomicReferenceArray<byte[]> skierDayPrefixes;
+            private final AtomicReferenceArray<byte[]> liftsPrefixes;
+
+            Season(int resortID, int seasonID, boolean cached) {
+                byte[] season = number(seasonID);
+                this.dayPrefix = concat(RESORT, resortSegment(resortID, false), SEASON, season, DAY);
+                this.resortDayPrefix = tagSkier
+                        ? concat(RESORT, resortSegment(resortID, true), SEASON, season, DAY)
+                        : dayPrefix;
+                this.leaderboard = concat(RESORT, resortSegment(resortID, true), SEASON, season, LEADERBOARD_SUFFIX);
+                this.daysSuffix = concat(SEASON, season, DAYS_SUFFIX);
+                this.daySkiers = cached ? new AtomicReferenceArray<>(DAYS) : null;
+                this.daySkiersHll = cached ? new AtomicReferenceArray<>(DAYS) : null;
+                this.skierDayPrefixes = cached ? new AtomicReferenceArray<>(DAYS) : null;
+                this.liftsPrefixes = cached ? new AtomicReferenceArray<>(DAYS) : null;
+            }
+
+            /**
+             * prefix + dayID + suffix, from the cache when the day is in it.
+             */
+            byte[] dayKey(AtomicReferenceArray<byte[]> cache, int dayID, byte[] prefix, byte[] suffix) {
+                if (cache == null || dayID < 0 || dayID >= DAYS) {
+                    return concat(prefix, number(dayID), suffix);
+                }
+                byte[] key = cache.get(dayID);
+                if (key == null) {
+                    key = concat(prefix, number(dayID), suffix);
+                    cache.set(dayID, key);
+                }
+                return key;
+            }
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] key = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, key, first.length, second.length);
+        return key;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second, byte[] third) {
+        byte[] key = Arrays.copyOf(first, first.length + second.length + third.length);
+        System.arraycopy(second, 0, key, first.length, second.length);
+        System.arraycopy(third, 0, key, first.length + second.length, third.length);
+        return key;
+    }
+
+    /**
+     * Only for building the cached pieces; the per-key paths use the fixed-arity overloads.
+     */
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] key = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, key, offset, part.length);
+            offset += part.length;
+        }
+        return key;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
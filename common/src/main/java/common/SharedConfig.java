@@ -0,0 +1,50 @@
+package common;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings the Server and the Consumer must agree on. Each module's own Config holds the rest.
+ */
+public class SharedConfig {
+    // Queue topology
+    public static final String QUEUE_NAME = "assignment2_queue";
+    public static final boolean QUEUE_DURABLE = false;
+    public static final boolean QUEUE_EXCLUSIVE = false;
+    public static final boolean QUEUE_AUTO_DELETE = false;
+    public static final Map<String, Object> QUEUE_ARGUMENTS = Map.of();
+    // An empty exchange name publishes through the default exchange
+    public static final String EXCHANGE_NAME = "";
+    public static final String EXCHANGE_TYPE = "direct";
+    public static final String ROUTING_KEY = "lift.ride";
+
+    // Redis
+    public static final String REDIS_HOST = "54.244.202.209";
+    public static final int REDIS_PORT = 6379;
+    public static final int REDIS_MAX_TOTAL = 100;
+    public static final int REDIS_MAX_IDLE = 20;
+    public static final int REDIS_MIN_IDLE = 10;
+    // Per pool (one per node outside standalone mode): how long a borrow may wait for a connection,
+    // and the connect and read timeouts of every connection
+    public static final long REDIS_MAX_WAIT_MS = 2_000;
+    public static final int REDIS_CONNECT_TIMEOUT_MS = 2_000;
+    public static final int REDIS_SOCKET_TIMEOUT_MS = 2_000;
+    // "standalone": REDIS_HOST:REDIS_PORT only; "sharded": client-side consistent hashing over REDIS_NODES;
+    // "cluster": Redis Cluster, with REDIS_NODES as seed nodes. The near-cache invalidation pub/sub
+    // always goes through REDIS_HOST:REDIS_PORT, so keep that node in the list.
+    public static final String REDIS_MODE = "standalone";
+    public static final List<String> REDIS_NODES = List.of(REDIS_HOST + ":" + REDIS_PORT);
+    // Hash tag used outside standalone mode: "resort" keeps all of a resort's keys on one shard; "skier"
+    // keeps each skier's keys together and only the resort-wide sets and leaderboard per resort.
+    public static final String REDIS_SHARD_BY = "resort";
+
+    // Near-cache for the Server's GET endpoints. The Consumer publishes invalidations on
+    // INVALIDATION_CHANNEL only when it is on, so the two sides can not disagree.
+    public static final boolean NEAR_CACHE = false;
+    // Pub/sub channel the Consumer announces written skier-days on, for the Server's near-cache
+    public static final String INVALIDATION_CHANNEL = "skiresort:invalidations";
+
+    // Async logging: ring buffer slots (rounded down to a power of two) and default events/second per log site
+    public static final int LOG_BUFFER_SIZE = 8_192;
+    public static final int LOG_RATE_PER_SITE = 100;
+}
@@ -1,5 +1,4 @@
-package beans;
-
+package common.beans;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -0,0 +1,121 @@
+package common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.CommandObjects;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.ShardedCommandArguments;
+import redis.clients.jedis.ShardedCommandObjects;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.providers.ShardedConnectionProvider;
+import redis.clients.jedis.util.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes RedisKeys through the same command objects a JedisSharding pipeline uses. The provider only
+ * builds its hash ring here; nothing connects to the nodes.
+ */
+@SuppressWarnings("deprecation")
+class KeyTagHashingTest {
+
+    private static final List<HostAndPort> NODES = List.of(new HostAndPort("redis-1", 6379),
+            new HostAndPort("redis-2", 6379), new HostAndPort("redis-3", 6379), new HostAndPort("redis-4", 6379));
+    private static final byte[] SCRIPT = "return 1".getBytes(StandardCharsets.US_ASCII);
+
+    private final ShardedConnectionProvider provider = new ShardedConnectionProvider(NODES,
+            DefaultJedisClientConfig.builder().build(), KeyTagHashing.INSTANCE);
+    // what JedisSharding.pipelined() builds: no key tag pattern
+    private final CommandObjects pipelineCommands = new ShardedCommandObjects(KeyTagHashing.INSTANCE);
+
+    @AfterEach
+    void closeProvider() {
+        provider.close();
+    }
+
+    @Test
+    void oneRidesKeysGoToOneShardWhenShardingByResort() {
+        RedisKeys.Layout keys = new RedisKeys.Layout("sharded", "resort");
+        for (int skierID = 1; skierID <= 1_000; skierID++) {
+            List<byte[]> rideKeys = List.of(keys.skierDay(7, 2024, 1, skierID), keys.skierVertical(7, skierID),
+                    keys.skierLifts(7, 2024, 1, skierID), keys.skierDays(7, skierID, 2024),
+                    keys.daySkiers(7, 2024, 1), keys.daySkiersHll(7, 2024, 1), keys.leaderboard(7, 2024));
+
+            // RideScript's EVAL: throws "Keys must generate same hash" if they do not
+            ShardedCommandArguments eval = (ShardedCommandArguments) pipelineCommands
+                    .eval(SCRIPT, rideKeys, List.of()).getArguments();
+            HostAndPort node = provider.getNode(eval.getKeyHash());
+            for (byte[] key : rideKeys) {
+                assertEquals(node, nodeOf(key));
+            }
+        }
+    }
+
+    @Test
+    void oneSkiersKeysGoToOneShardWhenShardingBySkier() {
+        RedisKeys.Layout keys = new RedisKeys.Layout("sharded", "skier");
+        for (int skierID = 1; skierID <= 1_000; skierID++) {
+            HostAndPort node = nodeOf(keys.skierDay(7, 2024, 1, skierID));
+            assertEquals(node, nodeOf(keys.skierVertical(7, skierID)));
+            assertEquals(node, nodeOf(keys.skierLifts(7, 2024, 1, skierID)));
+            assertEquals(node, nodeOf(keys.skierDays(7, skierID, 2024)));
+        }
+        // the resort-wide keys stay together per resort
+        HostAndPort resortNode = nodeOf(keys.leaderboard(7, 2024));
+        assertEquals(resortNode, nodeOf(keys.daySkiers(7, 2024, 1)));
+        assertEquals(resortNode, nodeOf(keys.daySkiersHll(7, 2024, 1)));
+    }
+
+    @Test
+    void resortsSpreadOverTheShards() {
+        RedisKeys.Layout keys = new RedisKeys.Layout("sharded", "resort");
+        Set<HostAndPort> used = new HashSet<>();
+        for (int resortID = 1; resortID <= 100; resortID++) {
+            used.add(nodeOf(keys.leaderboard(resortID, 2024)));
+        }
+        assertEquals(NODES.size(), used.size());
+    }
+
+    @Test
+    void plainMurmurHashSplitsARidesKeys() {
+        RedisKeys.Layout keys = new RedisKeys.Layout("sharded", "resort");
+        CommandObjects murmurCommands = new ShardedCommandObjects(Hashing.MURMUR_HASH);
+        assertThrows(JedisException.class, () -> {
+            for (int skierID = 1; skierID <= 100; skierID++) {
+                murmurCommands.eval(SCRIPT, List.of(keys.skierDay(7, 2024, 1, skierID),
+                        keys.skierVertical(7, skierID)), List.of());
+            }
+        });
+    }
+
+    @Test
+    void hashesTheTagOnly() {
+        long tag = KeyTagHashing.INSTANCE.hash("7");
+        assertEquals(tag, KeyTagHashing.INSTANCE.hash("resort:{7}:season:2024:leaderboard"));
+        assertEquals(tag, KeyTagHashing.INSTANCE.hash("{7}"));
+        // only the first tag counts
+        assertEquals(tag, KeyTagHashing.INSTANCE.hash("resort:{7}:skier:{42}:vertical"));
+        assertTrue(tag != KeyTagHashing.INSTANCE.hash("resort:{8}:season:2024:leaderboard"));
+    }
+
+    @Test
+    void hashesUntaggedKeysWhole() {
+        for (String key : List.of("SHARD-0-NODE-0", "resort:7:season:2024:leaderboard", "{}:empty", "open{only")) {
+            assertEquals(Hashing.MURMUR_HASH.hash(key), KeyTagHashing.INSTANCE.hash(key));
+        }
+    }
+
+    private HostAndPort nodeOf(byte[] key) {
+        ShardedCommandArguments arguments = (ShardedCommandArguments) pipelineCommands
+                .sadd(key, RedisKeys.number(1)).getArguments();
+        return provider.getNode(arguments.getKeyHash());
+    }
+}
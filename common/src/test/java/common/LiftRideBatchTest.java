@@ -0,0 +1,85 @@
+package common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiftRideBatchTest {
+
+    @Test
+    void roundTrips() {
+        List<byte[]> payloads = List.of(bytes("{\"a\":1}"), new byte[0], bytes("third"));
+        List<byte[]> decoded = LiftRideBatch.decode(LiftRideBatch.encode(payloads));
+        assertEquals(payloads.size(), decoded.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            assertArrayEquals(payloads.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    void roundTripsAnEmptyBatch() {
+        byte[] encoded = LiftRideBatch.encode(List.of());
+        assertEquals(Integer.BYTES, encoded.length);
+        assertTrue(LiftRideBatch.decode(encoded).isEmpty());
+    }
+
+    @Test
+    void writesTheDocumentedFraming() {
+        ByteBuffer buffer = ByteBuffer.wrap(LiftRideBatch.encode(List.of(bytes("ab"), bytes("c"))));
+        assertEquals(2, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        assertEquals('a', buffer.get());
+        assertEquals('b', buffer.get());
+        assertEquals(1, buffer.getInt());
+        assertEquals('c', buffer.get());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        byte[] encoded = LiftRideBatch.encode(List.of(bytes("first"), bytes("second")));
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IllegalArgumentException.class, () -> LiftRideBatch.decode(truncated),
+                    "truncated to " + length);
+        }
+    }
+
+    @Test
+    void rejectsBadCountsAndLengths() {
+        // negative count
+        assertThrows(IllegalArgumentException.class, () -> LiftRideBatch.decode(ints(-1)));
+        // more frames than the body can hold, without sizing a list for them
+        assertThrows(IllegalArgumentException.class, () -> LiftRideBatch.decode(ints(Integer.MAX_VALUE)));
+        // negative and overlong frame lengths
+        assertThrows(IllegalArgumentException.class, () -> LiftRideBatch.decode(ints(1, -1)));
+        assertThrows(IllegalArgumentException.class, () -> LiftRideBatch.decode(ints(1, 5)));
+    }
+
+    @Test
+    void rejectsTrailingBytes() {
+        byte[] encoded = LiftRideBatch.encode(List.of(bytes("ride")));
+        assertThrows(IllegalArgumentException.class,
+                () -> LiftRideBatch.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
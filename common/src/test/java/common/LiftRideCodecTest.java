@@ -0,0 +1,71 @@
+package common;
+
+import common.beans.LiftRide;
+import common.beans.LiftRideMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LiftRideCodecTest {
+
+    @Test
+    void roundTrips() {
+        LiftRideMessage message = new LiftRideMessage(7, 2024, 1, 110, new LiftRide(217, 21));
+        byte[] encoded = LiftRideCodec.encode(message);
+        assertEquals(LiftRideCodec.ENCODED_SIZE, encoded.length);
+        assertEquals(message, LiftRideCodec.decode(encoded));
+    }
+
+    @Test
+    void roundTripsExtremeValues() {
+        LiftRideMessage message = new LiftRideMessage(Integer.MAX_VALUE, Integer.MIN_VALUE, 0, -1,
+                new LiftRide(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(message, LiftRideCodec.decode(LiftRideCodec.encode(message)));
+    }
+
+    @Test
+    void writesTheDocumentedLayout() {
+        ByteBuffer buffer = ByteBuffer.wrap(
+                LiftRideCodec.encode(new LiftRideMessage(1, 2, 3, 4, new LiftRide(5, 6))));
+        assertEquals(LiftRideCodec.VERSION, buffer.get());
+        for (int expected = 1; expected <= 6; expected++) {
+            assertEquals(expected, buffer.getInt());
+        }
+    }
+
+    @Test
+    void encodesAtTheBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.allocate(3 + LiftRideCodec.ENCODED_SIZE);
+        buffer.position(3);
+        LiftRideCodec.encode(new LiftRideMessage(1, 2, 3, 4, new LiftRide(5, 6)), buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        assertEquals(LiftRideCodec.VERSION, buffer.get(3));
+    }
+
+    @Test
+    void rejectsWrongLengths() {
+        byte[] encoded = LiftRideCodec.encode(new LiftRideMessage(1, 2, 3, 4, new LiftRide(5, 6)));
+        assertThrows(IllegalArgumentException.class, () -> LiftRideCodec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> LiftRideCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> LiftRideCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+    }
+
+    @Test
+    void rejectsUnknownVersions() {
+        byte[] encoded = LiftRideCodec.encode(new LiftRideMessage(1, 2, 3, 4, new LiftRide(5, 6)));
+        encoded[0] = LiftRideCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> LiftRideCodec.decode(encoded));
+    }
+
+    @Test
+    void refusesMessagesWithMissingFields() {
+        assertThrows(NullPointerException.class,
+                () -> LiftRideCodec.encode(new LiftRideMessage(1, 2, 3, 4, new LiftRide(null, 6))));
+    }
+}